@@ -231,6 +231,21 @@ SchemaSpy is now in <a href='http://www.oreilly.com/' target="_blank">O&#39;Reil
         in the PATH environment variable.
         Use this option to explicitly specify where Graphviz is installed.</td>
       </tr>
+      <tr id="rendercacheparam">
+        <td class="param"><code>-renderCache <i>dir</i></code></td>
+        <td class="param">Keep the diagrams that Graphviz renders in the specified directory
+            and copy them from there (rather than rendering them again) when a <code>.dot</code> file
+            is identical to one that was already rendered by the same version of dot with the same formats.
+            The directory can be shared by multiple runs and schemas.
+        </td>
+      </tr>
+      <tr id="rendercachesizeparam">
+        <td class="param"><code>-renderCacheSize <i>megabytes</i></code></td>
+        <td class="param">Maximum size of the <a href="#rendercacheparam"><code>-renderCache</code></a>.
+            The least recently used diagrams are removed when it's exceeded.
+            Defaults to 512.
+        </td>
+      </tr>
       <tr id="descparam">
         <td class="param"><code>-desc <i>"Schema description"</i></code></td>
         <td class="param">Displays the specified textual description on summary pages.
@@ -268,6 +283,15 @@ SchemaSpy is now in <a href='http://www.oreilly.com/' target="_blank">O&#39;Reil
             See <a href="#meta">Providing Additional Metadata</a> for details.
         </td>
       </tr>
+      <tr id="fromxmlparam">
+        <td class="param"><code>-fromXml <i>xmlfile</i></code></td>
+        <td class="param">
+            Generate the output from the <code>[db].[schema].xml</code> that a previous run wrote
+            to its output directory instead of from a database, so no database connection (or driver) is needed.
+            The metadata can be extracted once near the database and rendered elsewhere as often as needed.<br>
+            Routines and the update rules of foreign keys aren't in the XML so they won't be shown.
+        </td>
+      </tr>
       <tr id="connpropsparam">
         <td class="param"><code>-connprops <i>propsfile</i> or <i>key\=value;</i></code></td>
         <td class="param">
@@ -328,6 +352,76 @@ SchemaSpy is now in <a href='http://www.oreilly.com/' target="_blank">O&#39;Reil
         <td class="param"><code>-norows</code></td>
         <td class="param">Don't query or display row counts.</td>
       </tr>
+      <tr id="rowcountsparam">
+        <td class="param"><code>-rowCounts exact<br>-rowCounts estimate</code></td>
+        <td class="param">How to determine the number of rows in each table.
+            <code>exact</code> (the default) counts them a table at a time.
+            <code>estimate</code> reads them all from the database's statistics with a single query
+            (<code>selectAllRowCountsSql</code>), which is much faster for large tables but can be out of date.
+            Estimated counts are marked as approximate in the output.
+        </td>
+      </tr>
+      <tr id="rowcounttimeoutparam">
+        <td class="param"><code>-rowCountTimeout <i>seconds</i></code></td>
+        <td class="param">Maximum number of seconds that counting the rows of a single table is allowed to take.
+            Tables that take longer are shown without a row count.
+            The default is unlimited (the database type's <code>metadataQueryTimeout</code>
+            doesn't apply to row counts).
+        </td>
+      </tr>
+      <tr id="rowcountbatchparam">
+        <td class="param"><code>-rowCountBatch <i>tables</i></code></td>
+        <td class="param">Count the rows of up to this many tables with a single <code>union all</code> query
+            rather than a query per table, which saves a lot of round trips to databases with many tables.
+            The tables of a batch that fails are counted individually.
+        </td>
+      </tr>
+      <tr id="rowcountbudgetparam">
+        <td class="param"><code>-rowCountBudget <i>seconds</i></code></td>
+        <td class="param">Maximum number of seconds to spend counting rows (in parallel, up to <code>-dbthreads</code> at a time).
+            Tables that haven't been counted by then are estimated from the database's statistics
+            if its type supports <code>selectAllRowCountsSql</code>, otherwise they're shown without a row count.
+            The default is unlimited.
+        </td>
+      </tr>
+      <tr id="dbthreadsparam">
+        <td class="param"><code>-dbthreads <i>threads</i><br>-dbthreads auto</code></td>
+        <td class="param">Maximum number of threads to use when querying database metadata
+            (default 15 unless the database type specifies otherwise).<br>
+            <code>auto</code> starts with a single query at a time and adjusts the number
+            of concurrent queries based on how quickly each one executes and whether they fail,
+            up to that maximum.  Row counts take longer for bigger tables, so they're only
+            judged by whether they fail or time out.  The number that it settled on is reported at the end.
+        </td>
+      </tr>
+      <tr id="lightremotesparam">
+        <td class="param"><code>-lightremotes</code></td>
+        <td class="param">Only load the columns of tables in other schemas that are involved in
+            relationships with the tables being analyzed.
+            Their other columns, indexes and primary keys are loaded only if they're needed.
+        </td>
+      </tr>
+      <tr id="usecacheparam">
+        <td class="param"><code>-useCache</code></td>
+        <td class="param">Keep a snapshot of the schema's metadata in the output directory and, on later runs
+            against the same database with the same options, load it from there instead of querying the database.
+            The snapshot is only used when the database type specifies <code>selectSchemaVersionSql</code>
+            and the schema hasn't changed since it was written.
+            Otherwise, if the database type specifies <code>selectTableChangeMarkersSql</code>,
+            then only the tables that changed (or are new) are loaded from the database.
+            Database types that specify neither (e.g. h2, hsqldb and derby) can't tell if the snapshot is
+            stale, so <code>-useCache</code> is ignored for them.
+            Row counts aren't part of the snapshot, so they're always current.
+        </td>
+      </tr>
+      <tr id="incrementalparam">
+        <td class="param"><code>-incremental</code></td>
+        <td class="param">Keep a manifest of what each table's page and diagrams were generated from
+            in the output directory and, on later runs, don't regenerate them if neither the table
+            nor anything that it's related to (within two degrees of separation) has changed.
+            Pages that aren't regenerated keep the time that they were last analyzed.
+        </td>
+      </tr>
       <tr id="noimpliedparam">
         <td class="param"><code>-noimplied</code></td>
         <td class="param">Don't include implied foreign key relationships in the 
@@ -352,6 +446,9 @@ SchemaSpy is now in <a href='http://www.oreilly.com/' target="_blank">O&#39;Reil
         <td class="param"><code>-columndetails</code></td>
         <td class="param">
             Specifies which details appear (and their order) on the columns tab.
+            Ids and database-specific column types are only queried if they're included here,
+            so leaving them out also leaves them out of the other pages and the XML
+            (columns are shown with the types that the JDBC driver reports).
             <br>Possible values:<br>
             <code>id table column type size nulls auto default children parents comments</code>
             <br>Default:<br>
@@ -505,6 +602,11 @@ SchemaSpy is now in <a href='http://www.oreilly.com/' target="_blank">O&#39;Reil
         <td class="param">PostgreSQL</td>
         <td align="center"><a href="http://jdbc.postgresql.org/download.html">driver</a></td>
       </tr>
+      <tr>
+        <td class="dbType">pgsql10</td>
+        <td class="param">PostgreSQL 10 and later (includes the bounds of partitions)</td>
+        <td align="center"><a href="http://jdbc.postgresql.org/download.html">driver</a></td>
+      </tr>
       <tr>
         <td class="dbType">sqlite</td>
         <td class="param">SQLite</td>
@@ -70,6 +70,8 @@ public class Config
     private boolean dbHelpRequired;
     private File outputDir;
     private File graphvizDir;
+    private File renderCacheDir;
+    private Integer renderCacheSize;
     private String dbType;
     private String catalog;
     private String schema;
@@ -84,6 +86,7 @@ public class Config
     private Integer port;
     private String server;
     private String meta;
+    private String fromXml;
     private Pattern tableInclusions;
     private Pattern tableExclusions;
     private Pattern columnExclusions;
@@ -91,6 +94,7 @@ public class Config
     private String userConnectionPropertiesFile;
     private Properties userConnectionProperties;
     private Integer maxDbThreads;
+    private boolean adaptiveDbThreads;
     private Integer maxDetailedTables;
     private String driverPath;
     private String css;
@@ -109,6 +113,13 @@ public class Config
     private Boolean rankDirBugEnabled;
     private Boolean encodeCommentsEnabled;
     private Boolean numRowsEnabled;
+    private Boolean rowCountEstimatesEnabled;
+    private Integer rowCountTimeout;
+    private Integer rowCountBudget;
+    private Integer rowCountBatchSize;
+    private Boolean lightRemoteTablesEnabled;
+    private Boolean useCacheEnabled;
+    private Boolean incrementalEnabled;
     private Boolean viewsEnabled;
     private Boolean meterEnabled;
     private Boolean railsEnabled;
@@ -259,6 +270,57 @@ public class Config
         return graphvizDir;
     }
 
+    /**
+     * Directory where the diagrams that Graphviz renders are kept so that later runs
+     * (or other schemas) don't have to render identical <code>.dot</code> files again.<p/>
+     *
+     * Defaults to <code>null</code> (diagrams aren't cached).
+     *
+     * @param renderCacheDir
+     */
+    public void setRenderCacheDir(File renderCacheDir) {
+        this.renderCacheDir = renderCacheDir;
+    }
+
+    /**
+     * @see #setRenderCacheDir(File)
+     * @return
+     */
+    public File getRenderCacheDir() {
+        if (renderCacheDir == null) {
+            String dir = pullParam("-renderCache");
+            if (dir != null)
+                setRenderCacheDir(new File(dir));
+        }
+
+        return renderCacheDir;
+    }
+
+    /**
+     * Maximum number of megabytes that the {@link #getRenderCacheDir() render cache} can use.
+     * The least recently used diagrams are removed when it's exceeded.<p/>
+     *
+     * Defaults to <code>512</code>.
+     *
+     * @param megabytes
+     */
+    public void setRenderCacheSize(int megabytes) {
+        renderCacheSize = new Integer(megabytes);
+    }
+
+    /**
+     * @see #setRenderCacheSize(int)
+     * @return
+     */
+    public int getRenderCacheSize() {
+        if (renderCacheSize == null) {
+            int megabytes = pullNonNegativeInt("-renderCacheSize");
+            renderCacheSize = new Integer(megabytes > 0 ? megabytes : 512);
+        }
+
+        return renderCacheSize.intValue();
+    }
+
     /**
      * Meta files are XML-based files that provide additional metadata
      * about the schema being evaluated.<p>
@@ -279,6 +341,24 @@ public class Config
         return meta;
     }
 
+    /**
+     * The XML model of a schema (as written to the output directory by a previous run)
+     * to generate the output from instead of connecting to a database.<p>
+     * This lets the (expensive) metadata be extracted once near the database and
+     * rendered elsewhere without any database access.
+     *
+     * @param fromXml
+     */
+    public void setFromXml(String fromXml) {
+        this.fromXml = fromXml;
+    }
+
+    public String getFromXml() {
+        if (fromXml == null)
+            fromXml = pullParam("-fromXml");
+        return fromXml;
+    }
+
     public void setDbType(String dbType) {
         this.dbType = dbType;
     }
@@ -383,7 +463,7 @@ public class Config
      */
     public String getUser() {
         if (user == null) {
-            if (!isSingleSignOn())
+            if (!isSingleSignOn() && getFromXml() == null) // nothing to log in to with -fromXml
                 user = pullRequiredParam("-u");
             else
                 user = pullParam("-u");
@@ -679,6 +759,9 @@ public class Config
 
     /**
      * Maximum number of threads to use when querying database metadata information.
+     * Specifying <code>auto</code> (e.g. <code>-dbThreads auto</code>) adapts the number of
+     * concurrent queries to how well the database copes with them,
+     * up to the maximum specified in the .properties (or the default).
      *
      * @param maxDbThreads
      */
@@ -706,12 +789,12 @@ public class Config
             if (threads == null)
                 threads = properties.getProperty("dbthreads");
             if (threads != null)
-                max = Integer.parseInt(threads);
+                max = parseDbThreads(threads, max);
             threads = pullParam("-dbThreads");
             if (threads == null)
                 threads = pullParam("-dbthreads");
             if (threads != null)
-                max = Integer.parseInt(threads);
+                max = parseDbThreads(threads, max);
             if (max < 0)
                 max = defaultMax;
             else if (max == 0)
@@ -723,6 +806,27 @@ public class Config
         return maxDbThreads.intValue();
     }
 
+    /**
+     * Returns the number of threads specified by <code>threads</code>
+     * or <code>max</code> if it's <code>auto</code>.
+     */
+    private int parseDbThreads(String threads, int max) {
+        adaptiveDbThreads = threads.trim().equalsIgnoreCase("auto");
+        return adaptiveDbThreads ? max : Integer.parseInt(threads.trim());
+    }
+
+    /**
+     * Returns <code>true</code> if the number of concurrent metadata queries
+     * should adapt to how the database copes with them (<code>-dbThreads auto</code>).
+     * {@link #getMaxDbThreads()} is then the upper limit.
+     *
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public boolean isAdaptiveDbThreads() throws InvalidConfigurationException {
+        getMaxDbThreads();
+        return adaptiveDbThreads;
+    }
+
     public boolean isLogoEnabled() {
         if (logoEnabled == null)
             logoEnabled = !options.remove("-nologo");
@@ -816,6 +920,207 @@ public class Config
         return numRowsEnabled;
     }
 
+    /**
+     * If enabled the number of rows in each table is estimated from the
+     * database's statistics (with a single query specified by the
+     * <code>selectAllRowCountsSql</code> in the .properties) rather than
+     * counted a table at a time.<p/>
+     *
+     * Defaults to <code>false</code> (<code>-rowCounts exact</code>).
+     *
+     * @param enabled
+     */
+    public void setRowCountEstimatesEnabled(boolean enabled) {
+        rowCountEstimatesEnabled = enabled;
+    }
+
+    /**
+     * @see #setRowCountEstimatesEnabled(boolean)
+     * @return
+     */
+    public boolean isRowCountEstimatesEnabled() {
+        if (rowCountEstimatesEnabled == null) {
+            String mode = pullParam("-rowCounts");
+            if (mode == null)
+                mode = pullParam("-rowcounts");
+
+            if (mode == null || mode.equalsIgnoreCase("exact"))
+                rowCountEstimatesEnabled = false;
+            else if (mode.equalsIgnoreCase("estimate"))
+                rowCountEstimatesEnabled = true;
+            else
+                throw new InvalidConfigurationException("Invalid rowCounts: '" + mode +
+                        "'. Must be either exact or estimate").setParamName("-rowCounts");
+        }
+
+        return rowCountEstimatesEnabled;
+    }
+
+    /**
+     * Maximum number of seconds that counting the rows of a single table
+     * is allowed to take.  Tables that take longer are reported as having
+     * an unknown number of rows.<p/>
+     *
+     * Defaults to <code>0</code> (unlimited).
+     *
+     * @param seconds
+     */
+    public void setRowCountTimeout(int seconds) {
+        rowCountTimeout = new Integer(seconds);
+    }
+
+    /**
+     * @see #setRowCountTimeout(int)
+     * @return
+     */
+    public int getRowCountTimeout() {
+        if (rowCountTimeout == null)
+            rowCountTimeout = new Integer(pullNonNegativeInt("-rowCountTimeout"));
+
+        return rowCountTimeout.intValue();
+    }
+
+    /**
+     * Maximum number of seconds to spend counting the rows of all of the tables.
+     * Tables that haven't been counted by then are estimated (if the
+     * <code>selectAllRowCountsSql</code> in the .properties allows it)
+     * or reported as having an unknown number of rows.<p/>
+     *
+     * Defaults to <code>0</code> (unlimited).
+     *
+     * @param seconds
+     */
+    public void setRowCountBudget(int seconds) {
+        rowCountBudget = new Integer(seconds);
+    }
+
+    /**
+     * @see #setRowCountBudget(int)
+     * @return
+     */
+    public int getRowCountBudget() {
+        if (rowCountBudget == null)
+            rowCountBudget = new Integer(pullNonNegativeInt("-rowCountBudget"));
+
+        return rowCountBudget.intValue();
+    }
+
+    /**
+     * Maximum number of tables whose rows are counted with a single
+     * <code>union all</code> query.  Tables in a batch that fails are counted individually.<p/>
+     *
+     * Defaults to <code>0</code> (each table is counted with its own query).
+     *
+     * @param batchSize
+     */
+    public void setRowCountBatchSize(int batchSize) {
+        rowCountBatchSize = new Integer(batchSize);
+    }
+
+    /**
+     * @see #setRowCountBatchSize(int)
+     * @return
+     */
+    public int getRowCountBatchSize() {
+        if (rowCountBatchSize == null)
+            rowCountBatchSize = new Integer(pullNonNegativeInt("-rowCountBatch"));
+
+        return rowCountBatchSize.intValue();
+    }
+
+    /**
+     * If enabled, tables in other schemas that are referenced by (or reference)
+     * the tables being analyzed only have the columns involved in those
+     * relationships loaded.  Their remaining columns, indexes and primary keys
+     * are only loaded if something asks for them.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setLightRemoteTablesEnabled(boolean enabled) {
+        lightRemoteTablesEnabled = enabled;
+    }
+
+    /**
+     * @see #setLightRemoteTablesEnabled(boolean)
+     * @return
+     */
+    public boolean isLightRemoteTablesEnabled() {
+        if (lightRemoteTablesEnabled == null)
+            lightRemoteTablesEnabled = options.remove("-lightremotes");
+
+        return lightRemoteTablesEnabled;
+    }
+
+    /**
+     * If enabled the schema's metadata is written to a snapshot in the output
+     * directory, and a later run against the same database (with the same options)
+     * reads it from there instead of from the database.  If the database type specifies
+     * <code>selectSchemaVersionSql</code> then the snapshot is only used if the schema
+     * hasn't changed since it was written.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setUseCacheEnabled(boolean enabled) {
+        useCacheEnabled = enabled;
+    }
+
+    /**
+     * @see #setUseCacheEnabled(boolean)
+     * @return
+     */
+    public boolean isUseCacheEnabled() {
+        if (useCacheEnabled == null)
+            useCacheEnabled = options.remove("-useCache");
+
+        return useCacheEnabled;
+    }
+
+    /**
+     * If enabled then a manifest of what each table's page was generated from is kept
+     * in the output directory, and a table's page and diagrams aren't regenerated
+     * if nothing that they're generated from has changed since the previous run.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setIncrementalEnabled(boolean enabled) {
+        incrementalEnabled = enabled;
+    }
+
+    /**
+     * @see #setIncrementalEnabled(boolean)
+     * @return
+     */
+    public boolean isIncrementalEnabled() {
+        if (incrementalEnabled == null)
+            incrementalEnabled = options.remove("-incremental");
+
+        return incrementalEnabled;
+    }
+
+    /**
+     * Returns the non-negative number specified by <code>paramId</code>
+     * or <code>0</code> if it wasn't specified.
+     */
+    private int pullNonNegativeInt(String paramId) {
+        String value = pullParam(paramId);
+        if (value == null)
+            value = pullParam(paramId.toLowerCase());
+        if (value == null)
+            return 0;
+
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException badValue) {
+            throw new InvalidConfigurationException("Invalid number: '" + value + "'").setParamName(paramId);
+        }
+    }
+
     /**
      * If enabled we'll include views in the analysis.<p/>
      *
@@ -1730,6 +2035,28 @@ public class Config
             params.add("-meter");
         if (!isNumRowsEnabled())
             params.add("-norows");
+        if (isRowCountEstimatesEnabled()) {
+            params.add("-rowCounts");
+            params.add("estimate");
+        }
+        if (getRowCountTimeout() > 0) {
+            params.add("-rowCountTimeout");
+            params.add(String.valueOf(getRowCountTimeout()));
+        }
+        if (getRowCountBudget() > 0) {
+            params.add("-rowCountBudget");
+            params.add(String.valueOf(getRowCountBudget()));
+        }
+        if (getRowCountBatchSize() > 0) {
+            params.add("-rowCountBatch");
+            params.add(String.valueOf(getRowCountBatchSize()));
+        }
+        if (isLightRemoteTablesEnabled())
+            params.add("-lightremotes");
+        if (isUseCacheEnabled())
+            params.add("-useCache");
+        if (isIncrementalEnabled())
+            params.add("-incremental");
         if (!isViewsEnabled())
             params.add("-noviews");
         if (isRankDirBugEnabled())
@@ -1829,10 +2156,21 @@ public class Config
             params.add("-meta");
             params.add(value);
         }
+        value = getFromXml();
+        if (value != null) {
+            params.add("-fromXml");
+            params.add(value);
+        }
         if (getGraphvizDir() != null) {
             params.add("-gv");
             params.add(getGraphvizDir().toString());
         }
+        if (getRenderCacheDir() != null) {
+            params.add("-renderCache");
+            params.add(getRenderCacheDir().toString());
+            params.add("-renderCacheSize");
+            params.add(String.valueOf(getRenderCacheSize()));
+        }
         params.add("-loglevel");
         params.add(getLogLevel().toString().toLowerCase());
         params.add("-sqlFormatter");
@@ -1846,7 +2184,7 @@ public class Config
         params.add("-x");
         params.add(getIndirectColumnExclusions().toString());
         params.add("-dbthreads");
-        params.add(String.valueOf(getMaxDbThreads()));
+        params.add(isAdaptiveDbThreads() ? "auto" : String.valueOf(getMaxDbThreads()));
         params.add("-maxdet");
         params.add(String.valueOf(getMaxDetailedTables()));
         params.add("-o");
@@ -22,6 +22,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -29,6 +30,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -37,6 +39,8 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.MetadataQuery;
+import net.sourceforge.schemaspy.model.MetadataQueryExecutor;
 import net.sourceforge.schemaspy.model.RailsForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
@@ -357,11 +361,53 @@ public class DbAnalyzer {
      * @param meta DatabaseMetaData
      */
     public static List<String> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec, boolean isCatalog) throws SQLException {
+        return getPopulatedSchemas(meta, schemaSpec, isCatalog, null);
+    }
+
+    /**
+     * getSchemas - returns a List of schema names (Strings) that contain tables and
+     * match the <code>schemaSpec</code> regular expression.<p/>
+     *
+     * The populated schemas are determined with a single query:
+     * <code>selectPopulatedSchemasSql</code> if <code>dbProperties</code> specifies it,
+     * otherwise (for schemas) one pass through all of the tables that the driver returns.
+     * Each schema is only checked individually if neither of those work.
+     *
+     * @param meta DatabaseMetaData
+     * @param dbProperties can be <code>null</code>
+     */
+    public static List<String> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec, boolean isCatalog, Properties dbProperties) throws SQLException {
         Set<String> schemas = new TreeSet<String>(); // alpha sorted
         Pattern schemaRegex = Pattern.compile(schemaSpec);
         Logger logger = Logger.getLogger(DbAnalyzer.class.getName());
         boolean logging = logger.isLoggable(Level.FINE);
 
+        Set<String> populated = null;
+        if (dbProperties != null && dbProperties.getProperty("selectPopulatedSchemasSql") != null)
+            populated = selectPopulatedSchemas(meta, dbProperties, logger);
+
+        // drivers tend to treat a null catalog as the current catalog,
+        // so only schemas can be found by scanning all of the tables
+        if (populated == null && !isCatalog)
+            populated = scanPopulatedSchemas(meta, logger);
+
+        if (populated != null) {
+            for (String schema : populated) {
+                if (schemaRegex.matcher(schema).matches()) {
+                    if (logging)
+                        logger.fine("Including schema " + schema +
+                                    ": matches \"" + schemaRegex + "\" and contains tables");
+                    schemas.add(schema);
+                } else {
+                    if (logging)
+                        logger.fine("Excluding schema " + schema +
+                                    ": doesn't match \"" + schemaRegex + '"');
+                }
+            }
+
+            return new ArrayList<String>(schemas);
+        }
+
         for (String schema : (isCatalog ? getCatalogs(meta) : getSchemas(meta))) {
             if (schemaRegex.matcher(schema).matches()) {
                 ResultSet rs = null;
@@ -392,6 +438,62 @@ public class DbAnalyzer {
         return new ArrayList<String>(schemas);
     }
 
+    /**
+     * Returns the names of the populated schemas as determined by
+     * <code>selectPopulatedSchemasSql</code> or <code>null</code> if it failed.
+     */
+    private static Set<String> selectPopulatedSchemas(DatabaseMetaData meta, Properties dbProperties, Logger logger) {
+        Set<String> populated = new TreeSet<String>();
+        String sql = dbProperties.getProperty("selectPopulatedSchemasSql");
+        MetadataQuery query = null;
+
+        try {
+            query = new MetadataQueryExecutor(meta.getConnection(), dbProperties).execute(sql, null);
+            while (query.next()) {
+                String schema = query.getString("schema_name");
+                if (schema != null)
+                    populated.add(schema);
+            }
+        } catch (SQLException exc) {
+            logger.warning("Failed to determine populated schemas with selectPopulatedSchemasSql: " + exc);
+            logger.warning(sql);
+            return null;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+
+        return populated;
+    }
+
+    /**
+     * Returns the names of the schemas that contain tables by going through all of
+     * the tables that the driver returns, or <code>null</code> if that failed.
+     */
+    private static Set<String> scanPopulatedSchemas(DatabaseMetaData meta, Logger logger) {
+        Set<String> populated = new TreeSet<String>();
+        ResultSet rs = null;
+
+        try {
+            rs = meta.getTables(null, null, "%", null);
+            while (rs.next()) {
+                String schema = rs.getString("TABLE_SCHEM");
+                if (schema != null)
+                    populated.add(schema);
+            }
+        } catch (SQLException exc) {
+            logger.fine("Failed to determine populated schemas from all tables: " + exc);
+            return null;
+        } finally {
+            try {
+                if (rs != null)
+                    rs.close();
+            } catch (SQLException ignore) {}
+        }
+
+        return populated.isEmpty() ? null : populated;
+    }
+
     /**
      * For debugging/analyzing result sets
      * @param rs ResultSet
@@ -0,0 +1,92 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Works out which optional categories of metadata are actually needed
+ * by the outputs that have been requested so that the others don't
+ * have to be queried.<p/>
+ *
+ * The outputs and what they use:
+ * <ul>
+ * <li>XML (always written) - comments, check constraints, ids, column types
+ *      and row counts (unless <code>-norows</code>)
+ * <li>HTML (unless <code>-nohtml</code>) - everything the XML uses plus routines
+ * <li>insertion/deletion order text - nothing beyond tables and their relationships
+ * </ul>
+ *
+ * Ids and the database-specific column types are only fetched when they're
+ * among the <code>-columndetails</code>, so leaving them out of there drops
+ * them from all of the outputs (columns fall back to the types that the
+ * driver reports).
+ */
+public class FetchPlan {
+    /**
+     * Optional categories of metadata
+     */
+    public enum Category {
+        COMMENTS,
+        CHECK_CONSTRAINTS,
+        IDS,
+        COLUMN_TYPES,
+        ROUTINES,
+        ROW_COUNTS
+    }
+
+    private final EnumSet<Category> needed = EnumSet.noneOf(Category.class);
+
+    public FetchPlan(Config config) {
+        // the XML is always written and it includes most things
+        needed.add(Category.COMMENTS);
+        needed.add(Category.CHECK_CONSTRAINTS);
+        if (config.getColumnDetails().contains("id"))
+            needed.add(Category.IDS);
+        if (config.getColumnDetails().contains("type"))
+            needed.add(Category.COLUMN_TYPES);
+        if (config.isNumRowsEnabled())
+            needed.add(Category.ROW_COUNTS);
+
+        // routines only show up in the HTML
+        if (config.isHtmlGenerationEnabled())
+            needed.add(Category.ROUTINES);
+    }
+
+    /**
+     * @param category
+     * @return <code>true</code> if one of the requested outputs uses the specified category of metadata
+     */
+    public boolean isNeeded(Category category) {
+        return needed.contains(category);
+    }
+
+    /**
+     * @return the categories of metadata that none of the requested outputs use
+     */
+    public Set<Category> getSkipped() {
+        return EnumSet.complementOf(needed);
+    }
+
+    @Override
+    public String toString() {
+        return needed.toString();
+    }
+}
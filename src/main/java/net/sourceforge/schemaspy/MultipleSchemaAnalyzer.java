@@ -96,9 +96,9 @@ public final class MultipleSchemaAnalyzer {
         if (schemas == null) {
             System.out.println("Analyzing schemas that match regular expression '" + schemaSpec + "':");
             System.out.println("(use -schemaSpec on command line or in .properties to exclude other schemas)");
-            populatedSchemas = getPopulatedSchemas(meta, schemaSpec, false);
+            populatedSchemas = getPopulatedSchemas(meta, schemaSpec, false, config);
             if (populatedSchemas.isEmpty())
-                populatedSchemas = getPopulatedSchemas(meta, schemaSpec, true);
+                populatedSchemas = getPopulatedSchemas(meta, schemaSpec, true, config);
             if (populatedSchemas.isEmpty())
                 populatedSchemas = Arrays.asList(new String[] {config.getUser()});
         } else {
@@ -178,14 +178,14 @@ public final class MultipleSchemaAnalyzer {
         }
     }
 
-    private List<String> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec, boolean isCatalog) throws SQLException {
+    private List<String> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec, boolean isCatalog, Config config) throws SQLException {
         List<String> populatedSchemas;
 
         if ((!isCatalog && meta.supportsSchemasInTableDefinitions()) ||
              (isCatalog && meta.supportsCatalogsInTableDefinitions())) {
             Pattern schemaRegex = Pattern.compile(schemaSpec);
 
-            populatedSchemas = DbAnalyzer.getPopulatedSchemas(meta, schemaSpec, isCatalog);
+            populatedSchemas = DbAnalyzer.getPopulatedSchemas(meta, schemaSpec, isCatalog, config.getDbProperties());
             Iterator<String> iter = populatedSchemas.iterator();
             while (iter.hasNext()) {
                 String schema = iter.next();
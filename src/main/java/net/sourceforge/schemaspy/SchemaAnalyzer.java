@@ -48,7 +48,9 @@ import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.InvalidConfigurationException;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
+import net.sourceforge.schemaspy.model.XmlDatabaseReader;
 import net.sourceforge.schemaspy.model.xml.SchemaMeta;
+import net.sourceforge.schemaspy.util.ConnectionPool;
 import net.sourceforge.schemaspy.util.ConnectionURLBuilder;
 import net.sourceforge.schemaspy.util.DOMUtil;
 import net.sourceforge.schemaspy.util.DbSpecificOption;
@@ -66,6 +68,7 @@ import net.sourceforge.schemaspy.view.HtmlRelationshipsPage;
 import net.sourceforge.schemaspy.view.HtmlRoutinesPage;
 import net.sourceforge.schemaspy.view.HtmlTablePage;
 import net.sourceforge.schemaspy.view.ImageWriter;
+import net.sourceforge.schemaspy.view.OutputManifest;
 import net.sourceforge.schemaspy.view.StyleSheet;
 import net.sourceforge.schemaspy.view.TextFormatter;
 import net.sourceforge.schemaspy.view.WriteStats;
@@ -131,99 +134,119 @@ public class SchemaAnalyzer {
                 return null;
             }
 
-            Properties properties = config.determineDbProperties(config.getDbType());
+            Properties properties = null;
+            ConnectionURLBuilder urlBuilder = null;
+            Connection connection = null;
+            DatabaseMetaData meta = null;
+            String dbName;
+            String schema;
 
-            ConnectionURLBuilder urlBuilder = new ConnectionURLBuilder(config, properties);
-            if (config.getDb() == null)
-                config.setDb(urlBuilder.getConnectionURL());
-
-            if (config.getRemainingParameters().size() != 0) {
-                StringBuilder msg = new StringBuilder("Unrecognized option(s):");
-                for (String remnant : config.getRemainingParameters())
-                    msg.append(" " + remnant);
-                logger.warning(msg.toString());
-            }
+            //
+            // create our representation of the database
+            //
+            Database db;
+
+            if (config.getFromXml() != null) {
+                warnOfUnrecognizedOptions(config);
+
+                db = readFromXml(config, outputDir);
+                dbName = db.getName();
+                schema = db.getSchema();
+            } else {
+                properties = config.determineDbProperties(config.getDbType());
+
+                urlBuilder = new ConnectionURLBuilder(config, properties);
+                if (config.getDb() == null)
+                    config.setDb(urlBuilder.getConnectionURL());
+
+                warnOfUnrecognizedOptions(config);
+
+                String driverClass = properties.getProperty("driver");
+                String driverPath = properties.getProperty("driverPath");
+                if (driverPath == null)
+                    driverPath = "";
+                if (config.getDriverPath() != null)
+                    driverPath = config.getDriverPath() + File.pathSeparator + driverPath;
+
+                ConnectionPool pool = getConnectionPool(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+                connection = pool.getPrimary();
+
+                meta = connection.getMetaData();
+                dbName = config.getDb();
+                schema = config.getSchema();
+
+                if (config.isEvaluateAllEnabled()) {
+                    List<String> args = config.asList();
+                    for (DbSpecificOption option : urlBuilder.getOptions()) {
+                        if (!args.contains("-" + option.getName())) {
+                            args.add("-" + option.getName());
+                            args.add(option.getValue().toString());
+                        }
+                    }
 
-            String driverClass = properties.getProperty("driver");
-            String driverPath = properties.getProperty("driverPath");
-            if (driverPath == null)
-                driverPath = "";
-            if (config.getDriverPath() != null)
-                driverPath = config.getDriverPath() + File.pathSeparator + driverPath;
+                    String schemaSpec = config.getSchemaSpec();
+                    if (schemaSpec == null)
+                        schemaSpec = properties.getProperty("schemaSpec", ".*");
+                    MultipleSchemaAnalyzer.getInstance().analyze(dbName, meta, schemaSpec, null, args, config);
+                    return null;    // no database to return
+                }
 
-            Connection connection = getConnection(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+                String catalog = config.getCatalog();
 
-            DatabaseMetaData meta = connection.getMetaData();
-            String dbName = config.getDb();
-            String schema = config.getSchema();
+                logger.fine("supportsSchemasInTableDefinitions: " + meta.supportsSchemasInTableDefinitions());
+                logger.fine("supportsCatalogsInTableDefinitions: " + meta.supportsCatalogsInTableDefinitions());
 
-            if (config.isEvaluateAllEnabled()) {
-                List<String> args = config.asList();
-                for (DbSpecificOption option : urlBuilder.getOptions()) {
-                    if (!args.contains("-" + option.getName())) {
-                        args.add("-" + option.getName());
-                        args.add(option.getValue().toString());
-                    }
+                if (schema == null && meta.supportsSchemasInTableDefinitions() &&
+                        !config.isSchemaDisabled()) {
+                    schema = config.getUser();
+                    logger.fine("schema not specified for a database that requires one.  using user: '" + schema + "'");
+                    if (schema == null)
+                        throw new InvalidConfigurationException("Either a schema ('-s') or a user ('-u') must be specified");
+                    config.setSchema(schema);
                 }
 
-                String schemaSpec = config.getSchemaSpec();
-                if (schemaSpec == null)
-                    schemaSpec = properties.getProperty("schemaSpec", ".*");
-                MultipleSchemaAnalyzer.getInstance().analyze(dbName, meta, schemaSpec, null, args, config);
-                return null;    // no database to return
-            }
-
-            String catalog = config.getCatalog();
-
-            logger.fine("supportsSchemasInTableDefinitions: " + meta.supportsSchemasInTableDefinitions());
-            logger.fine("supportsCatalogsInTableDefinitions: " + meta.supportsCatalogsInTableDefinitions());
+                if (catalog == null && schema == null &&
+                        meta.supportsCatalogsInTableDefinitions()) {
+                    catalog = dbName;
+                    logger.fine("catalog not specified for a database that requires one.  using dbName: '" + catalog + "'");
+                    config.setCatalog(catalog);
+                }
 
-            if (schema == null && meta.supportsSchemasInTableDefinitions() &&
-                    !config.isSchemaDisabled()) {
-                schema = config.getUser();
-                logger.fine("schema not specified for a database that requires one.  using user: '" + schema + "'");
-                if (schema == null)
-                    throw new InvalidConfigurationException("Either a schema ('-s') or a user ('-u') must be specified");
-                config.setSchema(schema);
-            }
+                SchemaMeta schemaMeta = config.getMeta() == null ? null : new SchemaMeta(config.getMeta(), dbName, schema);
+                if (config.isHtmlGenerationEnabled()) {
+                    new File(outputDir, "tables").mkdirs();
+                    new File(outputDir, "diagrams/summary").mkdirs();
 
-            if (catalog == null && schema == null &&
-                    meta.supportsCatalogsInTableDefinitions()) {
-                catalog = dbName;
-                logger.fine("catalog not specified for a database that requires one.  using dbName: '" + catalog + "'");
-                config.setCatalog(catalog);
-            }
+                    logger.info("Connected to " + meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion());
 
-            SchemaMeta schemaMeta = config.getMeta() == null ? null : new SchemaMeta(config.getMeta(), dbName, schema);
-            if (config.isHtmlGenerationEnabled()) {
-                new File(outputDir, "tables").mkdirs();
-                new File(outputDir, "diagrams/summary").mkdirs();
+                    if (schemaMeta != null && schemaMeta.getFile() != null) {
+                        logger.info("Using additional metadata from " + schemaMeta.getFile());
+                    }
 
-                logger.info("Connected to " + meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion());
+                    logger.info("Gathering schema details");
 
-                if (schemaMeta != null && schemaMeta.getFile() != null) {
-                    logger.info("Using additional metadata from " + schemaMeta.getFile());
+                    if (!fineEnabled)
+                        System.out.print("Gathering schema details...");
                 }
 
-                logger.info("Gathering schema details");
+                try {
+                    db = new Database(config, connection, meta, pool, dbName, catalog, schema, schemaMeta);
+                } finally {
+                    pool.close(); // only the primary connection is needed from here on
+                }
 
-                if (!fineEnabled)
-                    System.out.print("Gathering schema details...");
+                schemaMeta = null; // done with it so let GC reclaim it
             }
 
-            //
-            // create our representation of the database
-            //
-            Database db = new Database(config, connection, meta, dbName, catalog, schema, schemaMeta);
-
-            schemaMeta = null; // done with it so let GC reclaim it
-
             LineWriter out;
             Collection<Table> tables = new ArrayList<Table>(db.getTables());
             tables.addAll(db.getViews());
 
             if (tables.isEmpty()) {
-                dumpNoTablesMessage(schema, config.getUser(), meta, config.getTableInclusions() != null);
+                if (meta == null)
+                    logger.warning("No tables or views were found in " + config.getFromXml());
+                else
+                    dumpNoTablesMessage(schema, config.getUser(), meta, config.getTableInclusions() != null);
                 if (!config.isOneOfMultipleSchemas()) // don't bail if we're doing the whole enchilada
                     throw new EmptySchemaException();
             }
@@ -383,7 +406,16 @@ public class SchemaAnalyzer {
                 }
 
                 HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
+                OutputManifest manifest = config.isIncrementalEnabled() ? new OutputManifest(outputDir, db, tables) : null;
+                int numUnchanged = 0;
                 for (Table table : tables) {
+                    if (manifest != null && manifest.isUnchanged(table)) {
+                        if (fineEnabled)
+                            logger.fine("Details of " + table.getName() + " haven't changed");
+                        ++numUnchanged;
+                        continue;
+                    }
+
                     if (!fineEnabled)
                         System.out.print('.');
                     else
@@ -394,6 +426,11 @@ public class SchemaAnalyzer {
                     out.close();
                 }
 
+                if (manifest != null) {
+                    manifest.write();
+                    logger.info("Details of " + numUnchanged + " of " + tables.size() + " tables/views were unchanged");
+                }
+
                 out = new LineWriter(new File(outputDir, "schemaSpy.css"), config.getCharset());
                 StyleSheet.getInstance().write(out);
                 out.close();
@@ -490,6 +527,38 @@ public class SchemaAnalyzer {
         }
     }
 
+    /**
+     * Complain about any options that nothing has claimed
+     */
+    private void warnOfUnrecognizedOptions(Config config) {
+        if (config.getRemainingParameters().size() != 0) {
+            StringBuilder msg = new StringBuilder("Unrecognized option(s):");
+            for (String remnant : config.getRemainingParameters())
+                msg.append(" " + remnant);
+            logger.warning(msg.toString());
+        }
+    }
+
+    /**
+     * Create our representation of the database from the XML that a previous run
+     * wrote instead of from the database itself (<code>-fromXml</code>)
+     */
+    private Database readFromXml(Config config, File outputDir) throws SQLException {
+        File xmlFile = new File(config.getFromXml());
+
+        if (config.isHtmlGenerationEnabled()) {
+            new File(outputDir, "tables").mkdirs();
+            new File(outputDir, "diagrams/summary").mkdirs();
+
+            logger.info("Reading schema details from " + xmlFile);
+
+            if (!fineEnabled)
+                System.out.print("Gathering schema details...");
+        }
+
+        return new XmlDatabaseReader(config).read(xmlFile);
+    }
+
     /**
      * dumpNoDataMessage
      *
@@ -553,7 +622,13 @@ public class SchemaAnalyzer {
         }
     }
 
-    protected Connection getConnection(Config config, String connectionURL,
+    /**
+     * Returns a pool of connections to the database, with the primary
+     * connection already established.  Additional connections are created
+     * from the same driver, URL and properties as they're needed by the threads
+     * that query the database's metadata.
+     */
+    protected ConnectionPool getConnectionPool(Config config, String connectionURL,
                       String driverClass, String driverPath) throws FileNotFoundException, IOException {
         if (logger.isLoggable(Level.INFO)) {
             logger.info("Using database properties:");
@@ -604,7 +679,7 @@ public class SchemaAnalyzer {
             throw new ConnectionFailure(exc);
         }
 
-        return connection;
+        return new ConnectionPool(driver, connectionURL, connectionProperties, connection, config.getMaxDbThreads());
     }
 
     /**
@@ -18,6 +18,11 @@
  */
 package net.sourceforge.schemaspy.model;
 
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -27,6 +32,8 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,16 +41,39 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.PriorityQueue;
+import java.util.Properties;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.FetchPlan;
+import net.sourceforge.schemaspy.FetchPlan.Category;
 import net.sourceforge.schemaspy.model.xml.SchemaMeta;
 import net.sourceforge.schemaspy.model.xml.TableMeta;
 import net.sourceforge.schemaspy.util.CaseInsensitiveMap;
+import net.sourceforge.schemaspy.util.ConcurrencyLimiter;
+import net.sourceforge.schemaspy.util.ConnectionPool;
+import net.sourceforge.schemaspy.util.LikePattern;
 
 public class Database {
     private final Config config;
@@ -57,36 +87,205 @@ public class Database {
     private final Map<String, Routine> routines = new CaseInsensitiveMap<Routine>();
     private final DatabaseMetaData meta;
     private final Connection connection;
+    private final ConnectionPool pool;
+    private final ThreadLocal<Connection> workerConnection = new ThreadLocal<Connection>();
+    private final ThreadLocal<DatabaseMetaData> workerMeta = new ThreadLocal<DatabaseMetaData>();
+    private final ThreadLocal<long[]> queryLatencies = new ThreadLocal<long[]>(); // number of queries and their total nanos
+    private final Map<Connection, Lock> connectionLocks = new HashMap<Connection, Lock>();
+    private String metaDataThreadSafety;
+    private static final Lock driverLock = new ReentrantLock();
     private final String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
+    private final String databaseProduct; // only when there's no connection to ask
     private Set<String> sqlKeywords;
     private Pattern invalidIdentifierPattern;
+    private Set<Table> columnsLoaded = new HashSet<Table>();   // tables whose columns were bulk loaded
+    private Set<Table> indexesLoaded = new HashSet<Table>();   // tables whose indexes were bulk loaded
+    private Set<Table> primaryKeysLoaded = new HashSet<Table>(); // tables whose primary keys were bulk loaded
+    private Map<String, Set<String>> autoIncrementColumns;     // table name to auto increment column names
+    private final Map<String, String> partitionParents = new CaseInsensitiveMap<String>(); // partition name to top-level table name
+    private String tableFilter;
+    private final FetchPlan fetchPlan;
+    private final MetadataQueryExecutor queries;
     private final Logger logger = Logger.getLogger(getClass().getName());
     private final boolean fineEnabled = logger.isLoggable(Level.FINE);
 
     public Database(Config config, Connection connection, DatabaseMetaData meta, String name, String catalog, String schema, SchemaMeta schemaMeta) throws SQLException, MissingResourceException {
+        this(config, connection, meta, null, name, catalog, schema, schemaMeta);
+    }
+
+    /**
+     * @param pool optional source of additional connections so each of the threads that
+     *          query the database's metadata can do so on its own connection.
+     *          If <code>null</code> then they all share <code>connection</code>.
+     */
+    public Database(Config config, Connection connection, DatabaseMetaData meta, ConnectionPool pool, String name, String catalog, String schema, SchemaMeta schemaMeta) throws SQLException, MissingResourceException {
         this.config = config;
         this.connection = connection;
+        this.pool = pool;
+        this.fetchPlan = new FetchPlan(config);
+        this.queries = new MetadataQueryExecutor(this, config.getDbProperties());
         this.meta = meta;
         this.databaseName = name;
         this.catalog = catalog;
         this.schema = schema;
+        this.databaseProduct = null;
+
+        DatabaseSnapshot snapshot = config.isUseCacheEnabled() ? getSnapshot() : null;
+        List<Table> restored = new ArrayList<Table>(); // tables (not views) whose details came from the snapshot
+
+        if (snapshot == null || !snapshot.read()) {
+            // tables and views whose details came from the previous run's snapshot
+            Set<String> unchanged = Collections.emptySet();
+            Map<String, String> changeMarkers = snapshot == null ? null : getChangeMarkers();
+            if (changeMarkers != null) {
+                Set<String> names = snapshot.readUnchanged(changeMarkers);
+                if (names != null)
+                    unchanged = names;
+            }
+
+            initTables(meta, unchanged);
+            if (config.isViewsEnabled())
+                initViews(meta, unchanged);
+
+            initDetails();
+
+            List<Table> loaded = new ArrayList<Table>();
+            for (Table table : locals.values()) {
+                if (!unchanged.contains(table.getName()))
+                    loaded.add(table);
+                else if (!table.isView())
+                    restored.add(table);
+            }
+
+            connectTables(meta, loaded);
+            if (snapshot != null)
+                snapshot.connectUnchanged();
+
+            // -meta isn't part of the snapshot, so take it before applying that
+            if (snapshot != null) {
+                if (changeMarkers != null)
+                    snapshot.setChangeMarkers(changeMarkers);
+                snapshot.write();
+            }
+        } else {
+            logger.info("Loaded schema details from " + new File(config.getOutputDir(), DatabaseSnapshot.FILE_NAME));
+            restored.addAll(tables.values());
+        }
+
+        // row counts are data rather than schema, so they never come from the snapshot
+        if (fetchPlan.isNeeded(Category.ROW_COUNTS)) {
+            if (config.isRowCountEstimatesEnabled() && !restored.isEmpty())
+                initRowCountEstimates(restored, new HashMap<Table, Long>());
+
+            new RowCounter(config.getMaxDbThreads()).count(new ArrayList<Table>(tables.values()));
+        }
 
-        initTables(meta);
-        if (config.isViewsEnabled())
-            initViews(meta);
-
-        initCheckConstraints();
-        initTableIds();
-        initIndexIds();
-        initTableComments();
-        initTableColumnComments();
-        initViewComments();
-        initViewColumnComments();
-        initColumnTypes();
-        initRoutines();
-
-        connectTables();
         updateFromXmlMetadata(schemaMeta);
+
+        queries.logStats();
+    }
+
+    /**
+     * Create a database that isn't backed by a connection, so its contents
+     * are the caller's responsibility (e.g. {@link XmlDatabaseReader}).
+     *
+     * @param databaseProduct description of the type of database that the contents came from
+     */
+    Database(Config config, String name, String catalog, String schema, String databaseProduct) {
+        this.config = config;
+        this.connection = null;
+        this.pool = null;
+        this.fetchPlan = new FetchPlan(config);
+        this.queries = new MetadataQueryExecutor(this, new Properties());
+        this.meta = null;
+        this.databaseName = name;
+        this.catalog = catalog;
+        this.schema = schema;
+        this.databaseProduct = databaseProduct;
+    }
+
+    /**
+     * Returns the change markers of the tables and views in the schema
+     * (keyed by name) from the <code>selectTableChangeMarkersSql</code> in the .properties,
+     * or <code>null</code> if they couldn't be determined.
+     */
+    private Map<String, String> getChangeMarkers() {
+        String sql = config.getDbProperties().getProperty("selectTableChangeMarkersSql");
+        if (sql == null)
+            return null;
+
+        Map<String, String> markers = new HashMap<String, String>();
+        MetadataQuery query = null;
+
+        try {
+            query = queries.execute(sql, null);
+            while (query.next()) {
+                String tableName = query.getString("table_name");
+                String marker = query.getString("change_marker");
+                if (tableName != null && marker != null)
+                    markers.put(tableName, marker);
+            }
+        } catch (SQLException sqlException) {
+            // don't die just because this failed...everything will be loaded
+            warning("Failed to retrieve table change markers with custom SQL: " + sqlException, sql);
+            return null;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+
+        return markers;
+    }
+
+    /**
+     * Returns the snapshot of this database in the output directory,
+     * or <code>null</code> if there's no way to tell whether it's up to date
+     * (the schema's version couldn't be determined and there aren't any change markers).
+     */
+    private DatabaseSnapshot getSnapshot() {
+        StringBuilder key = new StringBuilder();
+        try {
+            key.append(getMetaData().getURL());
+        } catch (SQLException exc) {
+            // not all drivers know their URL
+            key.append(config.getDb());
+        }
+        key.append('|').append(config.getDbType());
+        key.append('|').append(getCatalog());
+        key.append('|').append(getSchema());
+        key.append('|').append(config.getTableInclusions());
+        key.append('|').append(config.getTableExclusions());
+        key.append('|').append(config.isViewsEnabled());
+        key.append('|').append(config.isRowCountEstimatesEnabled());
+        key.append('|').append(config.isLightRemoteTablesEnabled());
+        key.append('|').append(fetchPlan);
+
+        String schemaVersion = null;
+        String sql = config.getDbProperties().getProperty("selectSchemaVersionSql");
+        if (sql != null) {
+            MetadataQuery query = null;
+
+            try {
+                query = queries.execute(sql, null);
+                if (query.next())
+                    schemaVersion = query.getString("schema_version");
+            } catch (SQLException sqlException) {
+                // can't tell if the snapshot is up to date, so don't use it
+                warning("Failed to determine the schema's version with custom SQL: " + sqlException, sql);
+                return null;
+            } finally {
+                if (query != null)
+                    query.close();
+            }
+        }
+
+        if (schemaVersion == null && config.getDbProperties().getProperty("selectTableChangeMarkersSql") == null) {
+            logger.warning("Ignoring -useCache since changes to the schema can't be detected for this type of database" +
+                            " (it needs selectSchemaVersionSql or selectTableChangeMarkersSql)");
+            return null;
+        }
+
+        return new DatabaseSnapshot(this, new File(config.getOutputDir(), DatabaseSnapshot.FILE_NAME), key.toString(), schemaVersion);
     }
 
     public String getName() {
@@ -135,12 +334,197 @@ public class Database {
         return routines.values();
     }
 
+    /**
+     * Tables and views keyed by their names
+     */
+    Map<String, Table> getLocals() {
+        return locals;
+    }
+
+    /**
+     * Add a table whose details have already been loaded
+     * (e.g. from a {@link DatabaseSnapshot}).
+     */
+    void addTable(Table table) {
+        tables.put(table.getName(), table);
+    }
+
+    /**
+     * Add a view whose details have already been loaded
+     */
+    void addView(View view) {
+        views.put(view.getName(), view);
+    }
+
+    /**
+     * Add a remote table whose details have already been loaded.
+     * Its relationships are the caller's responsibility.
+     */
+    void addRemoteTable(RemoteTable table) {
+        remoteTables.put(getRemoteTableKey(table.getCatalog(), table.getSchema(), table.getName()), table);
+    }
+
+    /**
+     * Record that the specified partition is part of the specified (top-level) table
+     */
+    void setPartitionParent(String partitionName, String tableName) {
+        partitionParents.put(partitionName, tableName);
+    }
+
+    /**
+     * @return the top-level table that the specified table is a partition of,
+     *          or <code>null</code> if it isn't a partition
+     */
+    String getPartitionParent(String tableName) {
+        return partitionParents.get(tableName);
+    }
+
+    /**
+     * @return the specified remote table or <code>null</code> if it hasn't been added
+     */
+    Table getRemoteTable(String remoteCatalog, String remoteSchema, String remoteTableName) {
+        return remoteTables.get(getRemoteTableKey(remoteCatalog, remoteSchema, remoteTableName));
+    }
+
+    void addRoutine(Routine routine) {
+        routines.put(routine.getName(), routine);
+    }
+
+    /**
+     * Returns the connection that the current thread should use.
+     * That's normally the primary connection, but worker threads
+     * get their own when there's a {@link ConnectionPool}.
+     */
     public Connection getConnection() {
-        return connection;
+        Connection worker = workerConnection.get();
+        return worker != null ? worker : connection;
     }
 
+    /**
+     * Returns the metadata of the {@link #getConnection() connection}
+     * that the current thread should use.
+     */
     public DatabaseMetaData getMetaData() {
-        return meta;
+        DatabaseMetaData worker = workerMeta.get();
+        return worker != null ? worker : meta;
+    }
+
+    /**
+     * Bind a connection from the pool (if any) to the current thread
+     * so that its {@link #getConnection()} and {@link #getMetaData()}
+     * don't compete with other threads.
+     *
+     * @return the connection that must be passed to {@link #unbindConnection(Connection)}
+     *          when the thread is done with it
+     */
+    private Connection bindConnection() throws SQLException {
+        queryLatencies.set(new long[2]);
+        if (pool == null)
+            return null;
+
+        Connection worker = pool.acquire();
+        if (worker != connection) {
+            try {
+                workerMeta.set(timed(worker.getMetaData()));
+                workerConnection.set(worker);
+            } catch (SQLException exc) {
+                pool.release(worker);
+                throw exc;
+            }
+        }
+
+        return worker;
+    }
+
+    /**
+     * Returns the lock that must be held while querying metadata in a way that
+     * the driver might not be able to do concurrently,
+     * or <code>null</code> if no lock is required.<p/>
+     *
+     * This is driven by the <code>metadataThreadSafe</code> property in the .properties:
+     * <ul>
+     * <li><code>true</code> - the driver is thread safe so no lock is needed
+     * <li><code>false</code> - the driver isn't thread safe at all so all metadata queries
+     *      (regardless of connection) are serialized
+     * <li><code>perConnection</code> (default) - queries are serialized on each connection
+     * </ul>
+     */
+    public Lock getMetaDataLock() {
+        if (metaDataThreadSafety == null)
+            metaDataThreadSafety = config.getDbProperties().getProperty("metadataThreadSafe", "perConnection").trim();
+
+        if (metaDataThreadSafety.equalsIgnoreCase("true"))
+            return null;
+        if (metaDataThreadSafety.equalsIgnoreCase("false"))
+            return driverLock;
+        if (!metaDataThreadSafety.equalsIgnoreCase("perConnection"))
+            throw new InvalidConfigurationException("Invalid metadataThreadSafe value '" + metaDataThreadSafety +
+                                                    "'.  Must be true, false or perConnection");
+
+        Connection current = getConnection();
+        synchronized (connectionLocks) {
+            Lock lock = connectionLocks.get(current);
+            if (lock == null) {
+                lock = new ReentrantLock();
+                connectionLocks.put(current, lock);
+            }
+            return lock;
+        }
+    }
+
+    private void unbindConnection(Connection worker) {
+        workerConnection.set(null);
+        workerMeta.set(null);
+        queryLatencies.set(null);
+        if (pool != null)
+            pool.release(worker);
+    }
+
+    /**
+     * Wrap metadata so that the time it takes its queries to execute
+     * is {@link #queryExecuted(long) recorded}
+     */
+    private DatabaseMetaData timed(final DatabaseMetaData target) {
+        return (DatabaseMetaData)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                long start = System.nanoTime();
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException exc) {
+                    throw exc.getCause();
+                }
+
+                if (result instanceof ResultSet)
+                    queryExecuted(System.nanoTime() - start);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Record how long a metadata query took to execute on the current thread
+     * so that a {@link ConcurrencyLimiter} can judge how the database is coping
+     * with each query rather than with each (arbitrarily large) unit of work
+     *
+     * @param elapsedNanos
+     */
+    void queryExecuted(long elapsedNanos) {
+        long[] latencies = queryLatencies.get();
+        if (latencies != null) {
+            ++latencies[0];
+            latencies[1] += elapsedNanos;
+        }
+    }
+
+    /**
+     * @return the average time that the queries on the current (bound) thread took to execute,
+     *          or <code>-1</code> if it hasn't run any
+     */
+    private long getAverageQueryLatency() {
+        long[] latencies = queryLatencies.get();
+        return latencies == null || latencies[0] == 0 ? -1 : latencies[1] / latencies[0];
     }
 
     public String getConnectTime() {
@@ -148,6 +532,9 @@ public class Database {
     }
 
     public String getDatabaseProduct() {
+        if (meta == null)
+            return databaseProduct == null ? "" : databaseProduct;
+
         try {
             return meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion();
         } catch (SQLException exc) {
@@ -230,16 +617,59 @@ public class Database {
      * Create/initialize any tables in the schema.
 
      * @param metadata
+     * @param skip names of tables that have already been loaded
      * @throws SQLException
      */
-    private void initTables(final DatabaseMetaData metadata) throws SQLException {
+    private void initTables(final DatabaseMetaData metadata, Set<String> skip) throws SQLException {
         final Pattern include = config.getTableInclusions();
         final Pattern exclude = config.getTableExclusions();
         final int maxThreads = config.getMaxDbThreads();
 
         String[] types = getTypes("tableTypes", "TABLE");
         NameValidator validator = new NameValidator("table", include, exclude, types);
-        List<BasicTableMeta> entries = getBasicTableMeta(metadata, true, types);
+        List<Table> entries = new ArrayList<Table>();
+        Map<Table, Long> rowHints = new HashMap<Table, Long>();
+        Map<String, List<TablePartition>> partitions = initPartitions();
+
+        // create the tables without any of their details so that the details
+        // can be bulk loaded for the entire schema rather than a table at a time
+        for (BasicTableMeta entry : getBasicTableMeta(metadata, true, types)) {
+            if (skip.contains(entry.name))
+                continue;
+
+            if (partitionParents.containsKey(entry.name)) {
+                if (fineEnabled)
+                    logger.fine("Excluding table " + entry.name + ": partition of " + partitionParents.get(entry.name));
+                continue;
+            }
+
+            if (validator.isValid(entry.name, entry.type)) {
+                Table table = new Table(this, entry.catalog, entry.schema, entry.name, entry.remarks, false);
+                if (entry.numRows != -1) {
+                    table.setNumRows(entry.numRows);
+                    rowHints.put(table, entry.numRows);
+                }
+                List<TablePartition> tablePartitions = partitions.get(entry.name);
+                if (tablePartitions != null) {
+                    for (TablePartition partition : tablePartitions)
+                        table.addPartition(partition);
+                }
+                entries.add(table);
+            }
+        }
+
+        if (config.isRowCountEstimatesEnabled() && fetchPlan.isNeeded(Category.ROW_COUNTS))
+            initRowCountEstimates(entries, rowHints);
+
+        columnsLoaded = initColumns(metadata, entries);
+        autoIncrementColumns = getAutoIncrementColumns();
+        indexesLoaded = initIndexes(metadata, columnsLoaded);
+        primaryKeysLoaded = initPrimaryKeys(metadata, indexesLoaded);
+
+        // do the most expensive tables first so a few big ones at the end
+        // don't leave all but one thread sitting idle
+        schedule(entries, rowHints, maxThreads);
+        long start = System.currentTimeMillis();
 
         TableCreator creator;
         if (maxThreads == 1) {
@@ -252,53 +682,784 @@ public class Database {
             creator = new ThreadedTableCreator(maxThreads);
 
             // "prime the pump" so if there's a database problem we'll probably see it now
-            // and not in a secondary thread
-            while (!entries.isEmpty()) {
-                BasicTableMeta entry = entries.remove(0);
-
-                if (validator.isValid(entry.name, entry.type)) {
-                    new TableCreator().create(entry);
-                    break;
-                }
+            // and not in a secondary thread.  use the cheapest table so we don't delay the others
+            if (!entries.isEmpty()) {
+                new TableCreator().create(entries.remove(entries.size() - 1));
             }
         }
 
         // kick off the secondary threads to do the creation in parallel
-        for (BasicTableMeta entry : entries) {
-            if (validator.isValid(entry.name, entry.type)) {
-                creator.create(entry);
-            }
+        for (Table table : entries) {
+            creator.create(table);
         }
 
         // wait for everyone to finish
         creator.join();
+
+        if (fineEnabled)
+            logger.fine("Retrieved details of " + tables.size() + " tables in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Determine the partitions (or child tables) of the tables in the schema with the
+     * <code>selectPartitionsSql</code> in the .properties.  Partitions aren't loaded as
+     * tables of their own; they're listed on the table at the top of their hierarchy.<p/>
+     *
+     * Populates <code>partitionParents</code>.
+     *
+     * @return partitions keyed by the name of their top-level table
+     */
+    private Map<String, List<TablePartition>> initPartitions() {
+        Map<String, List<TablePartition>> partitions = new CaseInsensitiveMap<List<TablePartition>>();
+        String sql = config.getDbProperties().getProperty("selectPartitionsSql");
+        if (sql == null)
+            return partitions;
+
+        Map<String, String> parents = new CaseInsensitiveMap<String>();
+        Map<String, String> bounds = new CaseInsensitiveMap<String>();
+        MetadataQuery query = null;
+
+        try {
+            query = queries.execute(sql, null);
+
+            while (query.next()) {
+                String partitionName = query.getString("partition_name");
+                String tableName = query.getString("table_name");
+                if (partitionName != null && tableName != null) {
+                    parents.put(partitionName, tableName);
+                    bounds.put(partitionName, query.getOptionalString("partition_bound"));
+                }
+            }
+        } catch (SQLException sqlException) {
+            // don't die just because this failed...partitions will be treated as tables
+            warning("Failed to retrieve partitions with custom SQL: " + sqlException, sql);
+            return partitions;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+
+        for (Map.Entry<String, String> entry : parents.entrySet()) {
+            // sub-partitions belong to the table at the top of the hierarchy
+            String partitionName = entry.getKey();
+            String tableName = entry.getValue();
+            for (int depth = 0; parents.containsKey(tableName) && depth < parents.size(); ++depth)
+                tableName = parents.get(tableName);
+
+            setPartitionParent(partitionName, tableName);
+            List<TablePartition> tablePartitions = partitions.get(tableName);
+            if (tablePartitions == null) {
+                tablePartitions = new ArrayList<TablePartition>();
+                partitions.put(tableName, tablePartitions);
+            }
+            tablePartitions.add(new TablePartition(partitionName, bounds.get(partitionName)));
+        }
+
+        if (fineEnabled)
+            logger.fine("Found " + partitionParents.size() + " partitions of " + partitions.size() + " tables");
+
+        return partitions;
+    }
+
+    /**
+     * Estimate the number of rows in each of the tables from the database's statistics
+     * with the single query specified by the <code>selectAllRowCountsSql</code> in the .properties
+     * (<code>-rowCounts estimate</code>).<p/>
+     *
+     * Tables that the query doesn't return (or returns a negative count for,
+     * typically because they've never been analyzed) are left to be counted.
+     *
+     * @param entries
+     * @param rowHints populated with the estimates
+     */
+    private void initRowCountEstimates(List<Table> entries, Map<Table, Long> rowHints) {
+        String sql = config.getDbProperties().getProperty("selectAllRowCountsSql");
+        if (sql == null) {
+            logger.warning("Row counts can't be estimated for this type of database " +
+                            "since it doesn't specify selectAllRowCountsSql.  Counting them instead.");
+            return;
+        }
+
+        Map<String, Table> byName = new CaseInsensitiveMap<Table>();
+        for (Table table : entries)
+            byName.put(table.getName(), table);
+
+        Map<Table, Long> estimates = new HashMap<Table, Long>();
+        MetadataQuery query = null;
+
+        try {
+            query = queries.execute(sql, null);
+
+            while (query.next()) {
+                String tableName = query.getString("table_name");
+                if (tableName != null && partitionParents.containsKey(tableName))
+                    tableName = partitionParents.get(tableName);  // partitions add up to their table
+                Table table = byName.get(tableName);
+                long numRows = query.getLong("row_count");
+                if (table != null && !query.wasNull() && numRows >= 0) {
+                    Long previous = estimates.get(table);  // e.g. one row per partition
+                    estimates.put(table, previous == null ? numRows : previous + numRows);
+                }
+            }
+        } catch (SQLException sqlException) {
+            // don't die just because this failed...fall back to counting them
+            warning("Failed to estimate row counts with custom SQL: " + sqlException, sql);
+            return;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+
+        for (Map.Entry<Table, Long> estimate : estimates.entrySet()) {
+            estimate.getKey().setNumRows(estimate.getValue(), true);
+            rowHints.put(estimate.getKey(), estimate.getValue());
+        }
+
+        if (fineEnabled)
+            logger.fine("Estimated the number of rows in " + estimates.size() + " of " + entries.size() + " tables");
+    }
+
+    /**
+     * Counts the rows of tables in parallel (each worker on its own pooled connection)
+     * so that the output never has to wait for a count while it's being written.<p/>
+     *
+     * With <code>-rowCountBatch</code> the rows of several tables are counted with a
+     * single <code>union all</code> query.
+     * Each count is limited by <code>-rowCountTimeout</code> and all of them by
+     * <code>-rowCountBudget</code>.  Tables that aren't counted by the deadline are
+     * estimated with <code>selectAllRowCountsSql</code> (if available) or given a count of -1.
+     */
+    private class RowCounter {
+        private final int maxThreads;
+        private final Map<Table, Long> counts = new ConcurrentHashMap<Table, Long>();
+
+        RowCounter(int maxThreads) {
+            this.maxThreads = Math.max(1, maxThreads);
+        }
+
+        void count(Collection<Table> candidates) throws SQLException {
+            List<Table> uncounted = new ArrayList<Table>();
+            for (Table table : candidates) {
+                if (table.isNumRowsResolved() || table.isView() || table.isRemote())
+                    continue;
+                if (table.isLogical())
+                    table.setNumRows(-1);   // nothing to count
+                else
+                    uncounted.add(table);
+            }
+
+            if (uncounted.isEmpty())
+                return;
+
+            int budget = config.getRowCountBudget();
+            final long deadline = budget > 0 ? System.currentTimeMillis() + budget * 1000L : Long.MAX_VALUE;
+            final ConcurrencyLimiter limiter = new ConcurrencyLimiter(maxThreads, config.isAdaptiveDbThreads());
+            long start = System.currentTimeMillis();
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 0, TimeUnit.SECONDS,
+                                                                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private int numThreads;
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RowCounter-" + ++numThreads);
+                    thread.setDaemon(true); // don't let a hung count keep us alive
+                    return thread;
+                }
+            });
+
+            int batchSize = Math.max(1, config.getRowCountBatchSize());
+            for (int i = 0; i < uncounted.size(); i += batchSize) {
+                final List<Table> batch = uncounted.subList(i, Math.min(i + batchSize, uncounted.size()));
+                executor.execute(new Runnable() {
+                    public void run() {
+                        if (System.currentTimeMillis() >= deadline)
+                            return;
+
+                        Connection worker = null;
+                        long started;
+                        boolean failed = true;
+
+                        try {
+                            started = limiter.acquire();
+                        } catch (InterruptedException cancelled) {
+                            return;
+                        }
+
+                        try {
+                            worker = bindConnection();
+                            failed = !count(batch, deadline);
+                        } catch (SQLException exc) {
+                            logger.warning("Unable to extract the number of rows for " + batch.size() + " table(s): " + exc);
+                        } finally {
+                            unbindConnection(worker);
+                            // bigger tables take longer to count, so only failures (and timeouts) are congestion
+                            limiter.release(started, -1, failed);
+                        }
+                    }
+                });
+            }
+
+            executor.shutdown();
+
+            try {
+                while (!executor.awaitTermination(Math.max(1, Math.min(1000, deadline - System.currentTimeMillis())), TimeUnit.MILLISECONDS)) {
+                    if (System.currentTimeMillis() >= deadline)
+                        break;
+                }
+            } catch (InterruptedException interrupted) {
+                // treat it like we've run out of time
+            }
+
+            // anything still running is abandoned (and bounded by -rowCountTimeout).
+            // the counts are only applied here so late results can't change what's being written
+            executor.shutdownNow();
+
+            List<Table> missed = new ArrayList<Table>();
+            for (Table table : uncounted) {
+                Long numRows = counts.get(table);
+                if (numRows != null)
+                    table.setNumRows(numRows.longValue());
+                else
+                    missed.add(table);
+            }
+
+            if (!missed.isEmpty() && System.currentTimeMillis() >= deadline) {
+                logger.warning("Ran out of time counting rows after " + budget +
+                                " seconds with " + missed.size() + " of " + uncounted.size() + " tables left to count");
+
+                if (!config.isRowCountEstimatesEnabled() && config.getDbProperties().getProperty("selectAllRowCountsSql") != null)
+                    initRowCountEstimates(missed, new HashMap<Table, Long>());
+
+            }
+
+            for (Table table : missed) {
+                if (!table.isNumRowsResolved())
+                    table.setNumRows(-1);
+            }
+
+            if (fineEnabled)
+                logger.fine("Counted the rows of " + (uncounted.size() - missed.size()) + " tables in " +
+                            (System.currentTimeMillis() - start) + "ms");
+            if (limiter.isAdaptive())
+                logger.info("Settled on " + limiter + " concurrent row counts");
+        }
+
+        /**
+         * Count the rows of the specified tables, with a single <code>union all</code>
+         * query if there's more than one of them.  If that fails then they're
+         * counted one at a time (until we run out of time).
+         *
+         * @return <code>true</code> if all of them were counted without any problems
+         */
+        private boolean count(List<Table> batch, long deadline) throws SQLException {
+            if (batch.size() > 1) {
+                StringBuilder sql = new StringBuilder();
+                for (int i = 0; i < batch.size(); ++i) {
+                    if (i > 0)
+                        sql.append(" union all ");
+                    sql.append("select ");
+                    sql.append(i);
+                    sql.append(" as table_index, count(*) as row_count from ");
+                    sql.append(batch.get(i).getQualifiedName(false));
+                }
+
+                Map<Table, Long> batchCounts = new HashMap<Table, Long>();
+                MetadataQuery query = null;
+
+                try {
+                    // each table gets its share of the time
+                    int timeout = (int)Math.min(Integer.MAX_VALUE, (long)config.getRowCountTimeout() * batch.size());
+                    query = queries.executeLiteral(sql.toString(), timeout);
+                    while (query.next())
+                        batchCounts.put(batch.get((int)query.getLong("table_index")), query.getLong("row_count"));
+
+                    if (batchCounts.size() == batch.size()) {
+                        counts.putAll(batchCounts);
+                        return true;
+                    }
+                } catch (SQLException exc) {
+                    if (fineEnabled)
+                        logger.fine("Failed to count the rows of " + batch.size() + " tables in a single query, counting them individually: " + exc);
+                } finally {
+                    if (query != null)
+                        query.close();
+                }
+            }
+
+            boolean allCounted = true;
+            for (Table table : batch) {
+                if (System.currentTimeMillis() >= deadline)
+                    return false;
+
+                long numRows = table.fetchNumRows();
+                counts.put(table, numRows);
+                allCounted &= numRows != -1;
+            }
+
+            return allCounted;
+        }
+    }
+
+    /**
+     * Sort <code>entries</code> so that the tables that are the most expensive to create
+     * come first (longest processing time first).  Handing them out in that order
+     * to <code>numWorkers</code> threads keeps the overall time close to the minimum.<p/>
+     *
+     * The cost of a table is estimated by the number of queries that it still
+     * needs plus its number of columns (if they've been loaded).
+     * Ties are broken by the number of rows reported by <code>selectTablesSql</code>.
+     */
+    private void schedule(List<Table> entries, final Map<Table, Long> rowHints, int numWorkers) {
+        final Map<Table, Integer> costs = new HashMap<Table, Integer>();
+        for (Table table : entries)
+            costs.put(table, getEstimatedCost(table));
+
+        List<Table> original = fineEnabled ? new ArrayList<Table>(entries) : null;
+
+        Collections.sort(entries, new Comparator<Table>() {
+            public int compare(Table table1, Table table2) {
+                int rc = costs.get(table2).compareTo(costs.get(table1));
+                if (rc == 0) {
+                    Long rows1 = rowHints.get(table1);
+                    Long rows2 = rowHints.get(table2);
+                    rc = Long.valueOf(rows2 == null ? -1 : rows2).compareTo(rows1 == null ? -1 : rows1);
+                }
+                return rc;
+            }
+        });
+
+        if (fineEnabled) {
+            logger.fine("Scheduled " + entries.size() + " tables longest first across " + numWorkers +
+                        " threads: estimated makespan of " + getMakespan(entries, costs, numWorkers) +
+                        " vs " + getMakespan(original, costs, numWorkers) + " in catalog order");
+            if (!entries.isEmpty())
+                logger.fine("Most expensive table: " + entries.get(0).getFullName() + " (" + costs.get(entries.get(0)) + ")");
+        }
+    }
+
+    /**
+     * Estimated relative cost of collecting the details of <code>table</code>
+     * that haven't already been bulk loaded
+     */
+    private int getEstimatedCost(Table table) {
+        int cost = 0;
+        if (autoIncrementColumns == null && !table.isAutoUpdateResolved())
+            ++cost;
+        if (!columnsLoaded.contains(table))
+            ++cost;
+        if (!indexesLoaded.contains(table))
+            ++cost;
+        if (!primaryKeysLoaded.contains(table))
+            ++cost;
+        return cost + table.columns.size();
+    }
+
+    /**
+     * Simulate handing <code>entries</code> (in order) to the first available of
+     * <code>numWorkers</code> threads and return when the last one would finish.
+     */
+    private static int getMakespan(List<Table> entries, Map<Table, Integer> costs, int numWorkers) {
+        PriorityQueue<Integer> finishTimes = new PriorityQueue<Integer>();
+        for (int i = 0; i < Math.max(numWorkers, 1); ++i)
+            finishTimes.add(0);
+
+        int makespan = 0;
+        for (Table table : entries) {
+            int finish = finishTimes.remove() + costs.get(table);
+            makespan = Math.max(makespan, finish);
+            finishTimes.add(finish);
+        }
+
+        return makespan;
+    }
+
+    /**
+     * Bulk load the columns of the specified tables.<p/>
+     *
+     * Uses either the <code>selectAllColumnsSql</code> specified in the .properties
+     * or a single {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * for each catalog/schema instead of a query per table.
+     *
+     * @param metadata
+     * @param candidates tables to load columns for
+     * @return the tables whose columns were loaded.
+     *          Others will have to fall back to {@link Table#initColumns()}.
+     */
+    private Set<Table> initColumns(DatabaseMetaData metadata, Collection<Table> candidates) {
+        BulkLoader loader = new BulkLoader("columns", "selectAllColumnsSql", false) {
+            private ResultSet current;
+            private boolean hasAutoIncrement;
+
+            @Override
+            ResultSet query(DatabaseMetaData meta, String catalog, String schema) throws SQLException {
+                return meta.getColumns(catalog, schema, getTableFilter(), "%");
+            }
+
+            @Override
+            void load(Table table, ResultSet rs) throws SQLException {
+                if (rs != current) {
+                    current = rs;
+                    hasAutoIncrement = Table.hasAutoIncrement(rs);
+                }
+
+                table.addColumn(rs, hasAutoIncrement);
+            }
+
+            @Override
+            void discard(Table table) {
+                table.clearColumns();
+            }
+        };
+
+        return loader.load(metadata, candidates);
+    }
+
+    /**
+     * Returns the names of the auto increment columns of every table in the schema
+     * as determined by the <code>selectAutoIncrementColumnsSql</code> in the .properties.
+     *
+     * @return map of table name to the names of its auto increment columns
+     *          or <code>null</code> if it couldn't be determined in bulk
+     */
+    private Map<String, Set<String>> getAutoIncrementColumns() {
+        String sql = config.getDbProperties().getProperty("selectAutoIncrementColumnsSql");
+        if (sql == null)
+            return null;
+
+        Map<String, Set<String>> autoColumns = new CaseInsensitiveMap<Set<String>>();
+        MetadataQuery query = null;
+
+        try {
+            query = queries.execute(sql, null);
+
+            while (query.next()) {
+                String tableName = query.getString("table_name");
+                Set<String> columnNames = autoColumns.get(tableName);
+                if (columnNames == null) {
+                    columnNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+                    autoColumns.put(tableName, columnNames);
+                }
+                columnNames.add(query.getString("column_name"));
+            }
+
+            return autoColumns;
+        } catch (SQLException sqlException) {
+            // don't die just because this failed...fall back to what the driver tells us
+            warning("Failed to retrieve auto increment columns with custom SQL: " + sqlException, sql);
+            return null;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+    }
+
+    /**
+     * Bulk load the indexes of the specified tables.<p/>
+     *
+     * Uses either the <code>selectAllIndexesSql</code> specified in the .properties
+     * or a {@link DatabaseMetaData#getIndexInfo(String, String, String, boolean, boolean)}
+     * without a table name for each catalog/schema.
+     * The latter isn't attempted if the .properties specifies a <code>selectIndexesSql</code>
+     * since some drivers (e.g. Oracle's) do 'bad' things with <code>getIndexInfo()</code>.
+     *
+     * @param metadata
+     * @param candidates tables to load indexes for.  Their columns must already be loaded.
+     * @return the tables whose indexes were loaded.
+     *          Others will have to fall back to {@link Table#initIndexes()}.
+     */
+    private Set<Table> initIndexes(DatabaseMetaData metadata, Collection<Table> candidates) {
+        final boolean useMetadata = config.getDbProperties().getProperty("selectIndexesSql") == null;
+
+        BulkLoader loader = new BulkLoader("indexes", "selectAllIndexesSql", true) {
+            @Override
+            ResultSet query(DatabaseMetaData meta, String catalog, String schema) throws SQLException {
+                return useMetadata ? meta.getIndexInfo(catalog, schema, null, false, true) : null;
+            }
+
+            @Override
+            void load(Table table, ResultSet rs) throws SQLException {
+                if (rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic)
+                    table.addIndex(rs);
+            }
+
+            @Override
+            void discard(Table table) {
+                table.clearIndexes();
+            }
+        };
+
+        return loader.load(metadata, candidates);
+    }
+
+    /**
+     * Bulk load the primary keys of the specified tables.<p/>
+     *
+     * Uses either the <code>selectAllPrimaryKeysSql</code> specified in the .properties
+     * or a {@link DatabaseMetaData#getPrimaryKeys(String, String, String)}
+     * without a table name for each catalog/schema.
+     *
+     * @param metadata
+     * @param candidates tables to load primary keys for.  Their columns and indexes must
+     *          already be loaded so the primary key's index can be flagged as such.
+     * @return the tables whose primary keys were loaded.
+     *          Others will have to fall back to {@link Table#initPrimaryKeys()}.
+     */
+    private Set<Table> initPrimaryKeys(DatabaseMetaData metadata, Collection<Table> candidates) {
+        BulkLoader loader = new BulkLoader("primary keys", "selectAllPrimaryKeysSql", true) {
+            @Override
+            ResultSet query(DatabaseMetaData meta, String catalog, String schema) throws SQLException {
+                return meta.getPrimaryKeys(catalog, schema, null);
+            }
+
+            @Override
+            void load(Table table, ResultSet rs) throws SQLException {
+                table.setPrimaryColumn(rs);
+            }
+
+            @Override
+            void discard(Table table) {
+                table.clearPrimaryKeys();
+            }
+        };
+
+        return loader.load(metadata, candidates);
+    }
+
+    /**
+     * Loads one type of detail (columns, indexes, etc.) for many tables at once
+     * instead of issuing a query per table.<p/>
+     *
+     * The details come from either custom SQL specified in the .properties
+     * or from a metadata query for each catalog/schema.
+     * Tables that aren't covered by either have to fall back to loading
+     * their own details.
+     */
+    private abstract class BulkLoader {
+        private final String what;
+        private final String sqlPropertyName;
+        private final boolean coversAll;
+
+        /**
+         * @param what description of what's being loaded
+         * @param sqlPropertyName name of the .properties entry with the custom SQL
+         * @param coversAll <code>true</code> if a successful query covers every table
+         *          that was asked about, even ones that didn't return any rows
+         *          (e.g. a table without any indexes)
+         */
+        BulkLoader(String what, String sqlPropertyName, boolean coversAll) {
+            this.what = what;
+            this.sqlPropertyName = sqlPropertyName;
+            this.coversAll = coversAll;
+        }
+
+        /**
+         * Query the details of all of the tables in the specified catalog/schema.
+         *
+         * @return the details or <code>null</code> if they can't be queried in bulk
+         */
+        abstract ResultSet query(DatabaseMetaData metadata, String catalog, String schema) throws SQLException;
+
+        /**
+         * Add the details in the current row of <code>rs</code> to <code>table</code>
+         */
+        abstract void load(Table table, ResultSet rs) throws SQLException;
+
+        /**
+         * Throw away any details that were partially loaded into <code>table</code>
+         * before a failure so they don't get loaded twice when it falls back
+         * to loading its own.
+         */
+        abstract void discard(Table table);
+
+        /**
+         * @return the tables whose details were loaded
+         */
+        Set<Table> load(DatabaseMetaData metadata, Collection<Table> candidates) {
+            Set<Table> loaded = new HashSet<Table>();
+            if (candidates.size() < 2)
+                return loaded; // nothing to gain
+
+            String sql = config.getDbProperties().getProperty(sqlPropertyName);
+            if (sql != null) {
+                Map<String, Table> byName = new CaseInsensitiveMap<Table>();
+                for (Table table : candidates)
+                    byName.put(table.getName(), table);
+
+                MetadataQuery query = null;
+
+                try {
+                    query = queries.execute(sql, null);
+
+                    while (query.next()) {
+                        Table table = byName.get(query.getString("table_name"));
+                        if (table != null) {
+                            load(table, query.getResultSet());
+                            loaded.add(table);
+                        }
+                    }
+
+                    if (coversAll)
+                        loaded.addAll(candidates);
+
+                    return loaded;
+                } catch (SQLException sqlException) {
+                    // don't die just because this failed...fall back to a table at a time
+                    warning("Failed to retrieve " + what + " with custom SQL: " + sqlException, sql);
+                    for (Table table : loaded)
+                        discard(table);
+                    loaded.clear();
+                } finally {
+                    if (query != null)
+                        query.close();
+                }
+            }
+
+            // group the tables by their container so each one only takes a single query
+            Map<String, Map<String, Table>> containers = new HashMap<String, Map<String, Table>>();
+            for (Table table : candidates) {
+                String key = table.getCatalog() + "." + table.getSchema();
+                Map<String, Table> byName = containers.get(key);
+                if (byName == null) {
+                    byName = new CaseInsensitiveMap<Table>();
+                    containers.put(key, byName);
+                }
+                byName.put(table.getName(), table);
+            }
+
+            for (Map<String, Table> byName : containers.values()) {
+                Table first = byName.values().iterator().next();
+                String cat = first.getCatalog();
+                String sch = first.getSchema();
+                Set<Table> loadedHere = new HashSet<Table>();
+                ResultSet rs = null;
+
+                try {
+                    if (fineEnabled)
+                        logger.fine("Querying " + what + " of " + byName.size() + " tables in " + first.getContainer());
+
+                    rs = query(metadata, cat, sch);
+                    if (rs == null)
+                        break;
+
+                    boolean any = false;
+                    while (rs.next()) {
+                        any = true;
+
+                        // schema is a pattern, so make sure we didn't pick up a similarly named one
+                        String rowSchema = rs.getString("TABLE_SCHEM");
+                        if (sch != null && rowSchema != null && !sch.equals(rowSchema))
+                            continue;
+
+                        Table table = byName.get(rs.getString("TABLE_NAME"));
+                        if (table != null) {
+                            load(table, rs);
+                            loadedHere.add(table);
+                        }
+                    }
+
+                    // an empty result is ambiguous: some drivers return nothing
+                    // rather than complain about the missing table name
+                    if (coversAll && any)
+                        loadedHere.addAll(byName.values());
+
+                    loaded.addAll(loadedHere);
+                } catch (SQLException exc) {
+                    // don't die just because this failed...fall back to a table at a time
+                    logger.warning("Unable to bulk load " + what + " in '" + first.getContainer() + "': " + exc);
+                    for (Table table : loadedHere)
+                        discard(table);
+                } finally {
+                    if (rs != null) {
+                        try {
+                            rs.close();
+                        } catch (SQLException ignore) {}
+                    }
+                }
+            }
+
+            if (fineEnabled)
+                logger.fine("Bulk loaded " + what + " of " + loaded.size() + " of " + candidates.size() + " tables");
+
+            return loaded;
+        }
     }
 
     /**
      * Create/initialize any views in the schema.
      *
      * @param metadata
+     * @param skip names of views that have already been loaded
      * @throws SQLException
      */
-    private void initViews(DatabaseMetaData metadata) throws SQLException {
+    private void initViews(DatabaseMetaData metadata, Set<String> skip) throws SQLException {
         Pattern includeTables = config.getTableInclusions();
         Pattern excludeTables = config.getTableExclusions();
 
-        String[] types = getTypes("viewTypes", "VIEW");
-        NameValidator validator = new NameValidator("view", includeTables, excludeTables, types);
+        String[] types = getTypes("viewTypes", "VIEW");
+        NameValidator validator = new NameValidator("view", includeTables, excludeTables, types);
+        Map<String, String> viewDefinitions = null;
+
+        for (BasicTableMeta entry : getBasicTableMeta(metadata, false, types)) {
+            if (!skip.contains(entry.name) && validator.isValid(entry.name, entry.type)) {
+                String viewSql = entry.viewSql;
+                if (viewSql == null) {
+                    if (viewDefinitions == null)
+                        viewDefinitions = getViewDefinitions();
+                    viewSql = viewDefinitions.get(entry.name);
+                }
+
+                View view = new View(this, entry.catalog, entry.schema, entry.name,
+                                    entry.remarks, viewSql);
+                views.put(view.getName(), view);
+                if (fineEnabled) {
+                    logger.fine("Found details of view " + view.getName());
+                } else {
+                    System.out.print('.');
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the SQL that defines each of the views in the schema as determined by
+     * the <code>selectViewDefinitionsSql</code> in the .properties.
+     * That saves each view from having to query its own with <code>selectViewSql</code>.<p/>
+     *
+     * Some databases split long definitions across multiple rows, so the rows
+     * of each view are concatenated in the order that they're returned.
+     *
+     * @return map of view name to its definition.  Empty if it couldn't be determined in bulk.
+     */
+    private Map<String, String> getViewDefinitions() {
+        Map<String, String> definitions = new CaseInsensitiveMap<String>();
+        String sql = config.getDbProperties().getProperty("selectViewDefinitionsSql");
+        if (sql == null)
+            return definitions;
+
+        MetadataQuery query = null;
 
-        for (BasicTableMeta entry : getBasicTableMeta(metadata, false, types)) {
-            if (validator.isValid(entry.name, entry.type)) {
-                View view = new View(this, entry.catalog, entry.schema, entry.name,
-                                    entry.remarks, entry.viewSql);
-                views.put(view.getName(), view);
-                if (fineEnabled) {
-                    logger.fine("Found details of view " + view.getName());
-                } else {
-                    System.out.print('.');
+        try {
+            query = queries.execute(sql, null);
+            String definitionColumn = query.hasColumn("view_definition") ? "view_definition" : "text";
+
+            while (query.next()) {
+                String viewName = query.getString("view_name");
+                String text = query.getString(definitionColumn);
+                if (text != null) {
+                    String previous = definitions.get(viewName);
+                    definitions.put(viewName, previous == null ? text : previous + text);
                 }
             }
+        } catch (SQLException sqlException) {
+            // don't die just because this failed...fall back to a view at a time
+            warning("Failed to retrieve view definitions with custom SQL: " + sqlException, sql);
+            definitions.clear();
+        } finally {
+            if (query != null)
+                query.close();
         }
+
+        return definitions;
     }
 
     /**
@@ -348,25 +1509,23 @@ public class Database {
         String queryName = forTables ? "selectTablesSql" : "selectViewsSql";
         String sql = Config.getInstance().getDbProperties().getProperty(queryName);
         List<BasicTableMeta> basics = new ArrayList<BasicTableMeta>();
-        ResultSet rs = null;
 
         if (sql != null) {
             String clazz = forTables ? "table" : "view";
-            PreparedStatement stmt = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String name = rs.getString(clazz + "_name");
-                    String cat = getOptionalString(rs, clazz + "_catalog");
-                    String sch = getOptionalString(rs, clazz + "_schema");
+                while (query.next()) {
+                    String name = query.getString(clazz + "_name");
+                    String cat = query.getOptionalString(clazz + "_catalog");
+                    String sch = query.getOptionalString(clazz + "_schema");
                     if (cat == null && sch == null)
                         sch = schema;
-                    String remarks = getOptionalString(rs, clazz + "_comment");
-                    String text = forTables ? null : getOptionalString(rs, "view_definition");
-                    String rows = forTables ? getOptionalString(rs, "table_rows") : null;
+                    String remarks = query.getOptionalString(clazz + "_comment");
+                    String text = forTables ? null : query.getOptionalString("view_definition");
+                    String rows = forTables ? query.getOptionalString("table_rows") : null;
                     long numRows = rows == null ? -1 : Long.parseLong(rows);
 
                     basics.add(new BasicTableMeta(cat, sch, name, clazz, remarks, text, numRows));
@@ -375,15 +1534,13 @@ public class Database {
                 // don't die just because this failed
                 warning("Failed to retrieve " + clazz + " names with custom SQL: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
 
         if (basics.isEmpty()) {
-            rs = metadata.getTables(null, schema, "%", types);
+            ResultSet rs = metadata.getTables(null, schema, getTableFilter(), types);
 
             try {
                 while (rs.next()) {
@@ -413,6 +1570,24 @@ public class Database {
         return basics;
     }
 
+    /**
+     * Returns a <code>LIKE</code> pattern that matches (at least) all of the
+     * tables/views that are included by <code>-i</code> so the database
+     * can filter out the ones that we'd throw away anyway.
+     * {@link NameValidator} remains the final authority.<p/>
+     *
+     * Available to the SQL in the .properties as <code>:tableFilter</code>.
+     */
+    String getTableFilter() {
+        if (tableFilter == null) {
+            tableFilter = LikePattern.fromRegex(config.getTableInclusions());
+            if (fineEnabled && !tableFilter.equals("%"))
+                logger.fine("Only querying tables/views like '" + tableFilter + "'");
+        }
+
+        return tableFilter;
+    }
+
     /**
      * Return a database-specific array of types from the .properties file
      * with the specified property name.
@@ -450,27 +1625,23 @@ public class Database {
     private void initCheckConstraints() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectCheckConstraintsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
+                while (query.next()) {
+                    String tableName = query.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null)
-                        table.addCheckConstraint(rs.getString("constraint_name"), rs.getString("text"));
+                        table.addCheckConstraint(query.getString("constraint_name"), query.getString("text"));
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 warning("Failed to retrieve check constraints: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -478,22 +1649,20 @@ public class Database {
     private void initColumnTypes() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectColumnTypesSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
+                while (query.next()) {
+                    String tableName = query.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null) {
-                        String columnName = rs.getString("column_name");
+                        String columnName = query.getString("column_name");
                         TableColumn column = table.getColumn(columnName);
                         if (column != null) {
-                            column.setType(rs.getString("column_type"));
-                            column.setShortType(getOptionalString(rs, "short_column_type"));
+                            column.setType(query.getString("column_type"));
+                            column.setShortType(query.getOptionalString("short_column_type"));
                         }
                     }
                 }
@@ -501,10 +1670,8 @@ public class Database {
                 // don't die just because this failed
                 warning("Failed to retrieve column type details: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -512,28 +1679,24 @@ public class Database {
     private void initTableIds() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectTableIdsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
+                while (query.next()) {
+                    String tableName = query.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null)
-                        table.setId(rs.getObject("table_id"));
+                        table.setId(query.getObject("table_id"));
                 }
             } catch (SQLException sqlException) {
                 System.err.println();
                 System.err.println(sql);
                 throw sqlException;
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -541,20 +1704,18 @@ public class Database {
     private void initIndexIds() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectIndexIdsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
+                while (query.next()) {
+                    String tableName = query.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null) {
-                        TableIndex index = table.getIndex(rs.getString("index_name"));
+                        TableIndex index = table.getIndex(query.getString("index_name"));
                         if (index != null)
-                            index.setId(rs.getObject("index_id"));
+                            index.setId(query.getObject("index_id"));
                     }
                 }
             } catch (SQLException sqlException) {
@@ -562,11 +1723,162 @@ public class Database {
                 System.err.println(sql);
                 throw sqlException;
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
+            }
+        }
+    }
+
+    /**
+     * Run the passes that decorate the tables, views and routines with details
+     * from SQL specified in the .properties.<p/>
+     *
+     * The passes are independent of each other (with the exception of view comments
+     * overriding table comments) so they're run in parallel, each on its own connection.
+     *
+     * @throws SQLException
+     */
+    private void initDetails() throws SQLException {
+        List<Callable<Object>> passes = new ArrayList<Callable<Object>>();
+        passes.add(new InitPass("check constraints", Category.CHECK_CONSTRAINTS, "selectCheckConstraintsSql") {
+            @Override
+            void init() throws SQLException {
+                initCheckConstraints();
+            }
+        });
+        passes.add(new InitPass("table ids", Category.IDS, "selectTableIdsSql") {
+            @Override
+            void init() throws SQLException {
+                initTableIds();
+            }
+        });
+        passes.add(new InitPass("index ids", Category.IDS, "selectIndexIdsSql") {
+            @Override
+            void init() throws SQLException {
+                initIndexIds();
+            }
+        });
+        passes.add(new InitPass("table/view comments", Category.COMMENTS, "selectTableCommentsSql", "selectViewCommentsSql") {
+            @Override
+            void init() throws SQLException {
+                // view comments take precedence so they have to come second
+                initTableComments();
+                initViewComments();
+            }
+        });
+        passes.add(new InitPass("column comments", Category.COMMENTS, "selectColumnCommentsSql", "selectViewColumnCommentsSql") {
+            @Override
+            void init() throws SQLException {
+                initTableColumnComments();
+                initViewColumnComments();
+            }
+        });
+        passes.add(new InitPass("column types", Category.COLUMN_TYPES, "selectColumnTypesSql") {
+            @Override
+            void init() throws SQLException {
+                initColumnTypes();
+            }
+        });
+        passes.add(new InitPass("routines", Category.ROUTINES, "selectRoutinesSql", "selectRoutineParametersSql") {
+            @Override
+            void init() throws SQLException {
+                initRoutines();
+            }
+        });
+
+        if (fineEnabled && !fetchPlan.getSkipped().isEmpty())
+            logger.fine("Skipping " + fetchPlan.getSkipped() + " since they're not used by the requested output");
+
+        for (Iterator<Callable<Object>> iter = passes.iterator(); iter.hasNext(); ) {
+            if (!((InitPass)iter.next()).isNeeded())
+                iter.remove();
+        }
+
+        int maxThreads = Math.min(config.getMaxDbThreads(), passes.size());
+        if (maxThreads <= 1 || pool == null) {
+            // don't have multiple threads share a single connection
+            for (Callable<Object> pass : passes)
+                ((InitPass)pass).init();
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+        try {
+            for (Future<Object> result : executor.invokeAll(passes)) {
+                try {
+                    result.get();
+                } catch (ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if (cause instanceof SQLException)
+                        throw (SQLException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new IllegalStateException(cause.toString());
+                }
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            SQLException exc = new SQLException("Interrupted while retrieving schema details");
+            exc.initCause(interrupted);
+            throw exc;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * One of the passes run by {@link Database#initDetails()}
+     */
+    private abstract class InitPass implements Callable<Object> {
+        private final String description;
+        private final Category category;
+        private final String[] sqlPropertyNames;
+
+        /**
+         * @param description what the pass initializes
+         * @param category the category of metadata that the pass initializes
+         * @param sqlPropertyNames names of the .properties entries that the pass uses
+         */
+        InitPass(String description, Category category, String... sqlPropertyNames) {
+            this.description = description;
+            this.category = category;
+            this.sqlPropertyNames = sqlPropertyNames;
+        }
+
+        /**
+         * @return <code>true</code> if the output uses what this pass initializes
+         *          and the .properties has SQL for it to run
+         */
+        boolean isNeeded() {
+            if (!fetchPlan.isNeeded(category))
+                return false;
+
+            for (String name : sqlPropertyNames) {
+                if (config.getDbProperties().getProperty(name) != null)
+                    return true;
+            }
+
+            return false;
+        }
+
+        abstract void init() throws SQLException;
+
+        public Object call() throws SQLException {
+            long start = System.currentTimeMillis();
+            Connection worker = bindConnection();
+
+            try {
+                init();
+            } finally {
+                unbindConnection(worker);
             }
+
+            if (fineEnabled)
+                logger.fine("Retrieved " + description + " in " + (System.currentTimeMillis() - start) + "ms");
+
+            return null;
         }
     }
 
@@ -580,27 +1892,23 @@ public class Database {
     private void initTableComments() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectTableCommentsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
+                while (query.next()) {
+                    String tableName = query.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null)
-                        table.setComments(rs.getString("comments"));
+                        table.setComments(query.getString("comments"));
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 warning("Failed to retrieve table/view comments: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -613,30 +1921,26 @@ public class Database {
     private void initViewComments() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectViewCommentsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String viewName = rs.getString("view_name");
+                while (query.next()) {
+                    String viewName = query.getString("view_name");
                     if (viewName == null)
-                        viewName = rs.getString("table_name");
+                        viewName = query.getString("table_name");
                     Table view = views.get(viewName);
 
                     if (view != null)
-                        view.setComments(rs.getString("comments"));
+                        view.setComments(query.getString("comments"));
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 warning("Failed to retrieve table/view comments: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -651,30 +1955,26 @@ public class Database {
     private void initTableColumnComments() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectColumnCommentsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
+                while (query.next()) {
+                    String tableName = query.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null) {
-                        TableColumn column = table.getColumn(rs.getString("column_name"));
+                        TableColumn column = table.getColumn(query.getString("column_name"));
                         if (column != null)
-                            column.setComments(rs.getString("comments"));
+                            column.setComments(query.getString("comments"));
                     }
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 warning("Failed to retrieve column comments: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -687,33 +1987,29 @@ public class Database {
     private void initViewColumnComments() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectViewColumnCommentsSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String viewName = rs.getString("view_name");
+                while (query.next()) {
+                    String viewName = query.getString("view_name");
                     if (viewName == null)
-                        viewName = rs.getString("table_name");
+                        viewName = query.getString("table_name");
                     Table view = views.get(viewName);
 
                     if (view != null) {
-                        TableColumn column = view.getColumn(rs.getString("column_name"));
+                        TableColumn column = view.getColumn(query.getString("column_name"));
                         if (column != null)
-                            column.setComments(rs.getString("comments"));
+                            column.setComments(query.getString("comments"));
                     }
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 warning("Failed to retrieve view column comments: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -727,23 +2023,21 @@ public class Database {
         String sql = config.getDbProperties().getProperty("selectRoutinesSql");
 
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
-
-                while (rs.next()) {
-                    String routineName = rs.getString("routine_name");
-                    String routineType = rs.getString("routine_type");
-                    String returnType = rs.getString("dtd_identifier");
-                    String definitionLanguage = rs.getString("routine_body");
-                    String definition = rs.getString("routine_definition");
-                    String dataAccess = rs.getString("sql_data_access");
-                    String securityType = rs.getString("security_type");
-                    boolean deterministic = rs.getBoolean("is_deterministic");
-                    String comment = getOptionalString(rs, "routine_comment");
+                query = queries.execute(sql, null);
+
+                while (query.next()) {
+                    String routineName = query.getString("routine_name");
+                    String routineType = query.getString("routine_type");
+                    String returnType = query.getString("dtd_identifier");
+                    String definitionLanguage = query.getString("routine_body");
+                    String definition = query.getString("routine_definition");
+                    String dataAccess = query.getString("sql_data_access");
+                    String securityType = query.getString("security_type");
+                    boolean deterministic = query.getBoolean("is_deterministic");
+                    String comment = query.getOptionalString("routine_comment");
 
                     Routine routine = new Routine(routineName, routineType,
                                     returnType, definitionLanguage, definition,
@@ -754,33 +2048,27 @@ public class Database {
                 // don't die just because this failed
                 warning("Failed to retrieve stored procedure/function details: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
-                rs = null;
-                stmt = null;
+                if (query != null)
+                    query.close();
             }
         }
 
         sql = config.getDbProperties().getProperty("selectRoutineParametersSql");
 
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+                query = queries.execute(sql, null);
 
-                while (rs.next()) {
-                    String routineName = rs.getString("specific_name");
+                while (query.next()) {
+                    String routineName = query.getString("specific_name");
 
                     Routine routine = routines.get(routineName);
                     if (routine != null) {
-                        String paramName = rs.getString("parameter_name");
-                        String type = rs.getString("dtd_identifier");
-                        String mode = rs.getString("parameter_mode");
+                        String paramName = query.getString("parameter_name");
+                        String type = query.getString("dtd_identifier");
+                        String mode = query.getString("parameter_mode");
 
                         RoutineParameter param = new RoutineParameter(paramName, type, mode);
                         routine.addParameter(param);
@@ -791,10 +2079,8 @@ public class Database {
                 // don't die just because this failed
                 warning("Failed to retrieve stored procedure/function details: " + sqlException, sql);
             } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+                if (query != null)
+                    query.close();
             }
         }
     }
@@ -815,34 +2101,23 @@ public class Database {
 
     /**
      * Create a <code>PreparedStatement</code> from the specified SQL.
-     * The SQL can contain these named parameters (but <b>not</b> question marks).
-     * <ol>
-     * <li>:schema - replaced with the name of the schema
-     * <li>:owner - alias for :schema
-     * <li>:table - replaced with the name of the table
-     * </ol>
+     * The SQL can contain the named parameters described in
+     * {@link MetadataQueryExecutor#execute(String, String)} (but <b>not</b> question marks).
+     *
      * @param sql String - SQL without question marks
      * @param tableName String - <code>null</code> if the statement doesn't deal with <code>Table</code>-level details.
      * @throws SQLException
      * @return PreparedStatement
      */
     public PreparedStatement prepareStatement(String sql, String tableName) throws SQLException {
-        StringBuilder sqlBuf = new StringBuilder(sql);
-        List<String> sqlParams = getSqlParams(sqlBuf, tableName); // modifies sqlBuf
-        if (fineEnabled)
-            logger.fine(sqlBuf + " " + sqlParams);
-        PreparedStatement stmt = getConnection().prepareStatement(sqlBuf.toString());
-
-        try {
-            for (int i = 0; i < sqlParams.size(); ++i) {
-                stmt.setString(i + 1, sqlParams.get(i).toString());
-            }
-        } catch (SQLException exc) {
-            stmt.close();
-            throw exc;
-        }
+        return queries.prepareStatement(sql, tableName);
+    }
 
-        return stmt;
+    /**
+     * Returns the executor that all SQL-based metadata queries should go through.
+     */
+    public MetadataQueryExecutor getQueries() {
+        return queries;
     }
 
     public Table addRemoteTable(String remoteCatalog, String remoteSchema, String remoteTableName, String baseContainer, boolean logical) throws SQLException {
@@ -855,7 +2130,7 @@ public class Database {
             if (logical)
                 remoteTable = new LogicalRemoteTable(this, remoteCatalog, remoteSchema, remoteTableName, baseContainer);
             else
-                remoteTable = new RemoteTable(this, remoteCatalog, remoteSchema, remoteTableName, baseContainer);
+                remoteTable = new RemoteTable(this, remoteCatalog, remoteSchema, remoteTableName, baseContainer, config.isLightRemoteTablesEnabled());
 
             if (fineEnabled)
                 logger.fine("Adding remote table " + fullName);
@@ -1003,50 +2278,13 @@ public class Database {
         return invalidIdentifierPattern;
     }
 
-    /**
-     * Replaces named parameters in <code>sql</code> with question marks and
-     * returns appropriate matching values in the returned <code>List</code> of <code>String</code>s.
-     *
-     * @param sql StringBuffer input SQL with named parameters, output named params are replaced with ?'s.
-     * @param tableName String
-     * @return List of Strings
-     *
-     * @see #prepareStatement(String, String)
-     */
-    private List<String> getSqlParams(StringBuilder sql, String tableName) {
-        Map<String, String> namedParams = new HashMap<String, String>();
-        String schema = getSchema();
-        if (schema == null)
-            schema = getName(); // some 'schema-less' db's treat the db name like a schema (unusual case)
-        namedParams.put(":schema", schema);
-        namedParams.put(":owner", schema); // alias for :schema
-        if (tableName != null) {
-            namedParams.put(":table", tableName);
-            namedParams.put(":view", tableName); // alias for :table
-        }
-
-        List<String> sqlParams = new ArrayList<String>();
-        int nextColon = sql.indexOf(":");
-        while (nextColon != -1) {
-            String paramName = new StringTokenizer(sql.substring(nextColon), " ,\"')").nextToken();
-            String paramValue = namedParams.get(paramName);
-            if (paramValue == null)
-                throw new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + sql + "'");
-            sqlParams.add(paramValue);
-            sql.replace(nextColon, nextColon + paramName.length(), "?"); // replace with a ?
-            nextColon = sql.indexOf(":", nextColon);
-        }
-
-        return sqlParams;
-    }
-
     /**
      * Take the supplied XML-based metadata and update our model of the schema with it
      *
      * @param schemaMeta
      * @throws SQLException
      */
-    private void updateFromXmlMetadata(SchemaMeta schemaMeta) throws SQLException {
+    void updateFromXmlMetadata(SchemaMeta schemaMeta) throws SQLException {
         if (schemaMeta != null) {
             config.setDescription(schemaMeta.getComments());
 
@@ -1090,12 +2328,260 @@ public class Database {
         }
     }
 
-    private void connectTables() throws SQLException {
-        for (Table table : tables.values()) {
-            table.connectForeignKeys(locals);
+    /**
+     * Connect the foreign keys of the specified tables and views
+     *
+     * @param metadata
+     * @param candidates
+     * @throws SQLException
+     */
+    private void connectTables(DatabaseMetaData metadata, Collection<Table> candidates) throws SQLException {
+        Set<Table> importsConnected = new HashSet<Table>();
+        Set<Table> exportsConnected = new HashSet<Table>();
+        if (candidates.size() > 1) {
+            if (!connectForeignKeys(candidates, importsConnected, exportsConnected))
+                connectForeignKeys(metadata, candidates, importsConnected, exportsConnected);
+        }
+
+        // fall back to a table at a time for whatever couldn't be done in bulk
+        for (Table table : candidates) {
+            if (!importsConnected.contains(table))
+                table.connectImportedKeys(locals);
+            if (!exportsConnected.contains(table))
+                table.connectExportedKeys();
+        }
+    }
+
+    /**
+     * Connect the foreign keys of the specified tables
+     * with the <code>selectAllForeignKeysSql</code> specified in the .properties.<p/>
+     *
+     * If the query also returns <code>fktable_schem</code> then it's responsible for
+     * returning the foreign keys in other schemas that reference our tables so
+     * that those 'remote' tables can be found from the same results.
+     *
+     * @param candidates
+     * @param importsConnected populated with the tables whose foreign keys were connected
+     * @param exportsConnected populated with the tables whose remote references were found
+     * @return <code>false</code> if the SQL isn't specified or failed
+     */
+    private boolean connectForeignKeys(Collection<Table> candidates, Set<Table> importsConnected, Set<Table> exportsConnected) throws SQLException {
+        String sql = config.getDbProperties().getProperty("selectAllForeignKeysSql");
+        if (sql == null)
+            return false;
+
+        List<ForeignKeyRow> imported = new ArrayList<ForeignKeyRow>();
+        List<ForeignKeyRow> exported = new ArrayList<ForeignKeyRow>();
+        boolean remotesIncluded;
+        MetadataQuery query = null;
+
+        try {
+            query = queries.execute(sql, null);
+
+            remotesIncluded = query.hasColumn("fktable_schem");
+            boolean hasCatalog = query.hasColumn("fktable_cat");
+
+            while (query.next()) {
+                ForeignKeyRow row = new ForeignKeyRow(query.getResultSet(), remotesIncluded, hasCatalog);
+                if (row.isIn(getCatalog(), getSchema()))
+                    imported.add(row);
+                else
+                    exported.add(row);
+            }
+        } catch (SQLException sqlException) {
+            // don't die just because this failed...fall back to metadata
+            warning("Failed to retrieve foreign keys with custom SQL: " + sqlException, sql);
+            return false;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+
+        Map<String, Table> byName = new CaseInsensitiveMap<Table>();
+        for (Table table : candidates)
+            byName.put(table.getName(), table);
+
+        connectForeignKeys(byName, imported, exported);
+
+        importsConnected.addAll(candidates);
+        if (remotesIncluded)
+            exportsConnected.addAll(candidates);
+
+        return true;
+    }
+
+    /**
+     * Connect the foreign keys of the specified tables with
+     * {@link DatabaseMetaData#getImportedKeys(String, String, String)} and
+     * {@link DatabaseMetaData#getExportedKeys(String, String, String)}
+     * without a table name for each catalog/schema instead of
+     * a pair of queries per table.
+     *
+     * @param metadata
+     * @param candidates
+     * @param importsConnected populated with the tables whose foreign keys were connected
+     * @param exportsConnected populated with the tables whose remote references were found
+     */
+    private void connectForeignKeys(DatabaseMetaData metadata, Collection<Table> candidates, Set<Table> importsConnected, Set<Table> exportsConnected) throws SQLException {
+        // group the tables by their container so each one only takes a single query
+        Map<String, Map<String, Table>> containers = new HashMap<String, Map<String, Table>>();
+        for (Table table : candidates) {
+            String key = table.getCatalog() + "." + table.getSchema();
+            Map<String, Table> byName = containers.get(key);
+            if (byName == null) {
+                byName = new CaseInsensitiveMap<Table>();
+                containers.put(key, byName);
+            }
+            byName.put(table.getName(), table);
+        }
+
+        for (Map<String, Table> byName : containers.values()) {
+            Table first = byName.values().iterator().next();
+            String cat = first.getCatalog();
+            String sch = first.getSchema();
+            List<ForeignKeyRow> imported = null;
+            List<ForeignKeyRow> exported = null;
+            ResultSet rs = null;
+
+            if (fineEnabled)
+                logger.fine("Querying foreign keys of " + byName.size() + " tables in " + first.getContainer());
+
+            try {
+                rs = metadata.getImportedKeys(cat, sch, null);
+                imported = new ArrayList<ForeignKeyRow>();
+                while (rs.next()) {
+                    ForeignKeyRow row = new ForeignKeyRow(rs, true, true);
+
+                    // schema is a pattern, so make sure we didn't pick up a similarly named one
+                    if (row.isIn(cat, sch))
+                        imported.add(row);
+                }
+
+                // an empty result is ambiguous: some drivers return nothing
+                // rather than complain about the missing table name
+                if (imported.isEmpty())
+                    imported = null;
+            } catch (SQLException exc) {
+                imported = null;
+                logger.warning("Unable to bulk load foreign keys in '" + first.getContainer() + "': " + exc);
+            } finally {
+                if (rs != null)
+                    rs.close();
+                rs = null;
+            }
+
+            if (sch != null || cat != null) {
+                try {
+                    rs = metadata.getExportedKeys(cat, sch, null);
+                    exported = new ArrayList<ForeignKeyRow>();
+                    boolean any = false;
+                    while (rs.next()) {
+                        any = true;
+                        String pkSchema = rs.getString("PKTABLE_SCHEM");
+                        if (sch != null && pkSchema != null && !sch.equals(pkSchema))
+                            continue;
+
+                        ForeignKeyRow row = new ForeignKeyRow(rs, true, true);
+                        if (!String.valueOf(sch).equals(String.valueOf(row.fkSchema)) ||
+                            !String.valueOf(cat).equals(String.valueOf(row.fkCatalog))) {
+                            exported.add(row);
+                        }
+                    }
+
+                    if (!any)
+                        exported = null;
+                } catch (SQLException exc) {
+                    exported = null;
+                    logger.warning("Unable to bulk load foreign keys referencing '" + first.getContainer() + "': " + exc);
+                } finally {
+                    if (rs != null)
+                        rs.close();
+                }
+            } else {
+                // nothing for the table-by-table approach to do either
+                exported = new ArrayList<ForeignKeyRow>();
+            }
+
+            List<ForeignKeyRow> none = Collections.emptyList();
+            connectForeignKeys(byName, imported == null ? none : imported, exported == null ? none : exported);
+
+            if (imported != null)
+                importsConnected.addAll(byName.values());
+            if (exported != null)
+                exportsConnected.addAll(byName.values());
+        }
+
+        if (fineEnabled)
+            logger.fine("Bulk connected foreign keys of " + importsConnected.size() + " of " + candidates.size() + " tables");
+    }
+
+    /**
+     * Connect the foreign keys described by <code>imported</code> to our tables
+     * and add the 'remote' tables that reference us described by <code>exported</code>.
+     */
+    private void connectForeignKeys(Map<String, Table> byName, List<ForeignKeyRow> imported, List<ForeignKeyRow> exported) {
+        for (ForeignKeyRow row : imported) {
+            Table table = byName.get(row.fkTableName);
+            if (table != null) {
+                try {
+                    table.addForeignKey(row.fkName, row.fkColumnName,
+                            row.pkCatalog, row.pkSchema, row.pkTableName, row.pkColumnName,
+                            row.updateRule, row.deleteRule, locals);
+                } catch (SQLException exc) {
+                    logger.log(Level.WARNING, "Exception while connecting foreign key " + row.fkName + " of " + table.getFullName(), exc);
+                }
+            }
+        }
+
+        for (ForeignKeyRow row : exported) {
+            try {
+                addRemoteTable(row.fkCatalog, row.fkSchema, row.fkTableName, getSchema(), false);
+            } catch (SQLException exc) {
+                logger.log(Level.WARNING, "Exception while adding remote table " + row.fkTableName, exc);
+            }
+        }
+    }
+
+    /**
+     * A single row of foreign key details as returned by
+     * {@link DatabaseMetaData#getImportedKeys(String, String, String)}.<p/>
+     * Rows are collected before they're applied so that a failure part way through
+     * a bulk query doesn't leave half-connected foreign keys behind.
+     */
+    private static class ForeignKeyRow {
+        private final String fkCatalog;
+        private final String fkSchema;
+        private final String fkTableName;
+        private final String fkColumnName;
+        private final String fkName;
+        private final String pkCatalog;
+        private final String pkSchema;
+        private final String pkTableName;
+        private final String pkColumnName;
+        private final int updateRule;
+        private final int deleteRule;
+
+        ForeignKeyRow(ResultSet rs, boolean hasSchema, boolean hasCatalog) throws SQLException {
+            fkCatalog = hasCatalog ? rs.getString("FKTABLE_CAT") : null;
+            fkSchema = hasSchema ? rs.getString("FKTABLE_SCHEM") : null;
+            fkTableName = rs.getString("FKTABLE_NAME");
+            fkColumnName = rs.getString("FKCOLUMN_NAME");
+            fkName = rs.getString("FK_NAME");
+            pkCatalog = rs.getString("PKTABLE_CAT");
+            pkSchema = rs.getString("PKTABLE_SCHEM");
+            pkTableName = rs.getString("PKTABLE_NAME");
+            pkColumnName = rs.getString("PKCOLUMN_NAME");
+            updateRule = rs.getInt("UPDATE_RULE");
+            deleteRule = rs.getInt("DELETE_RULE");
         }
-        for (Table view : views.values()) {
-            view.connectForeignKeys(locals);
+
+        /**
+         * Returns <code>true</code> if the foreign key's table is in the specified catalog/schema.
+         * Unknowns are assumed to match.
+         */
+        boolean isIn(String catalog, String schema) {
+            return (fkSchema == null || schema == null || fkSchema.equals(schema)) &&
+                   (fkCatalog == null || catalog == null || fkCatalog.equals(catalog));
         }
     }
 
@@ -1117,24 +2603,33 @@ public class Database {
      */
     private class TableCreator {
         /**
-         * Create a table and put it into <code>tables</code>
+         * Collect the details of a table that weren't bulk loaded
+         * and put it into <code>tables</code>
          */
-        void create(BasicTableMeta tableMeta) throws SQLException {
-            createImpl(tableMeta);
+        void create(Table table) throws SQLException {
+            createImpl(table);
         }
 
-        protected void createImpl(BasicTableMeta tableMeta) throws SQLException {
-            Table table = new Table(Database.this, tableMeta.catalog, tableMeta.schema, tableMeta.name, tableMeta.remarks);
-            if (tableMeta.numRows != -1) {
-                table.setNumRows(tableMeta.numRows);
-            }
+        protected void createImpl(Table table) throws SQLException {
+            long start = System.currentTimeMillis();
+
+            if (!columnsLoaded.contains(table))
+                table.initColumns();
+            if (autoIncrementColumns != null)
+                table.setAutoUpdatedColumns(autoIncrementColumns.get(table.getName()));
+            else if (!table.isAutoUpdateResolved())
+                table.initColumnAutoUpdate(false);
+            if (!indexesLoaded.contains(table))
+                table.initIndexes();
+            if (!primaryKeysLoaded.contains(table))
+                table.initPrimaryKeys();
 
             synchronized (tables) {
                 tables.put(table.getName(), table);
             }
 
             if (logger.isLoggable(Level.FINE)) {
-                logger.fine("Retrieved details of " + table.getFullName());
+                logger.fine("Retrieved details of " + table.getFullName() + " in " + (System.currentTimeMillis() - start) + "ms");
             } else {
                 System.out.print('.');
             }
@@ -1144,75 +2639,127 @@ public class Database {
          * Wait for all of the tables to be created.
          * By default this does nothing since this implementation isn't threaded.
          */
-        void join() {
+        void join() throws SQLException {
         }
     }
 
     /**
-     * Multi-threaded implementation of a class that creates tables
+     * Multi-threaded implementation of a class that creates tables.<p/>
+     *
+     * A fixed number of worker threads are fed from a bounded queue,
+     * so {@link #create(Table)} blocks while the queue is full.
+     * The first failure cancels any outstanding work and is rethrown
+     * by {@link #create(Table)} or {@link #join()}, whichever comes first.
      */
     private class ThreadedTableCreator extends TableCreator {
-        private final Set<Thread> threads = new HashSet<Thread>();
-        private final int maxThreads;
+        private final ThreadPoolExecutor executor;
+        private final ConcurrencyLimiter limiter;
+        private Exception failure;
 
         ThreadedTableCreator(int maxThreads) {
-            this.maxThreads = maxThreads;
-        }
+            limiter = new ConcurrencyLimiter(maxThreads, config.isAdaptiveDbThreads());
 
-        @Override
-        void create(final BasicTableMeta tableMeta) throws SQLException {
-            Thread runner = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        createImpl(tableMeta);
-                    } catch (SQLException exc) {
-                        exc.printStackTrace(); // nobody above us in call stack...dump it here
-                    } finally {
-                        synchronized (threads) {
-                            threads.remove(this);
-                            threads.notify();
-                        }
-                    }
-                }
-            };
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(maxThreads * 2);
+            executor = new ThreadPoolExecutor(maxThreads, maxThreads, 0, TimeUnit.SECONDS, queue, new ThreadFactory() {
+                private int numThreads;
 
-            synchronized (threads) {
-                // wait for enough 'room'
-                while (threads.size() >= maxThreads) {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TableCreator-" + ++numThreads);
+                    thread.setDaemon(true); // don't let a hung query keep us alive
+                    return thread;
+                }
+            }, new RejectedExecutionHandler() {
+                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor rejecter) {
+                    // the queue is full, so wait for room
+                    if (rejecter.isShutdown())
+                        throw new RejectedExecutionException("Table creation has been cancelled");
                     try {
-                        threads.wait();
+                        rejecter.getQueue().put(runnable);
                     } catch (InterruptedException interrupted) {
+                        throw new RejectedExecutionException(interrupted);
                     }
                 }
+            });
+        }
 
-                threads.add(runner);
-            }
+        @Override
+        void create(final Table table) throws SQLException {
+            rethrowFailure();
 
-            runner.start();
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        Connection worker = null;
+                        long started;
+                        boolean failed = true;
+
+                        try {
+                            started = limiter.acquire();
+                        } catch (InterruptedException cancelled) {
+                            return;
+                        }
+
+                        try {
+                            worker = bindConnection();
+                            createImpl(table);
+                            failed = false;
+                        } catch (SQLException exc) {
+                            fail(exc);
+                        } catch (RuntimeException exc) {
+                            fail(exc);
+                        } finally {
+                            long latency = getAverageQueryLatency();
+                            unbindConnection(worker);
+                            limiter.release(started, latency, failed);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException cancelled) {
+                rethrowFailure();
+                throw cancelled;
+            }
         }
 
         /**
-         * Wait for all of the started threads to complete
+         * Wait for all of the queued tables to be created
          */
         @Override
-        public void join() {
-            while (true) {
-                Thread thread;
-
-                synchronized (threads) {
-                    Iterator<Thread> iter = threads.iterator();
-                    if (!iter.hasNext())
-                        break;
+        void join() throws SQLException {
+            executor.shutdown();
 
-                    thread = iter.next();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // keep waiting...a failure will cause shutdownNow()
                 }
+            } catch (InterruptedException interrupted) {
+                executor.shutdownNow();
+            }
 
-                try {
-                    thread.join();
-                } catch (InterruptedException exc) {
-                }
+            if (limiter.isAdaptive())
+                logger.info("Settled on " + limiter + " concurrent metadata queries");
+
+            rethrowFailure();
+        }
+
+        /**
+         * Remember the first failure and cancel everything that's outstanding
+         */
+        private void fail(Exception exc) {
+            synchronized (this) {
+                if (failure != null)
+                    return;
+                failure = exc;
             }
+
+            logger.log(Level.SEVERE, "Failed to retrieve table details", exc);
+            executor.shutdownNow();
+        }
+
+        private synchronized void rethrowFailure() throws SQLException {
+            if (failure instanceof SQLException)
+                throw (SQLException)failure;
+            if (failure != null)
+                throw (RuntimeException)failure;
         }
     }
 
@@ -0,0 +1,672 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A binary snapshot of the metadata that a {@link Database} loaded so that a
+ * later run (with <code>-useCache</code>) can skip the database's metadata
+ * entirely when nothing has changed.<p/>
+ *
+ * The snapshot includes the tables, views, remote tables, columns, indexes,
+ * primary and foreign keys, comments, check constraints, partitions and routines.
+ * Things that are derived from those (implied relationships), that come from
+ * elsewhere (<code>-meta</code>) or that are data rather than schema (row counts)
+ * aren't included.<p/>
+ *
+ * A snapshot is only used if it was written by the same version of this format
+ * for the same database URL, dbType, catalog, schema and options that affect
+ * what's loaded (its <i>key</i>), and with the same schema version
+ * (from the optional <code>selectSchemaVersionSql</code>).
+ * Without a schema version there's no way to tell if it's stale, so it's never used as a whole.<p/>
+ *
+ * If the schema version has changed (or is unknown) then the tables whose change markers
+ * (from the optional <code>selectTableChangeMarkersSql</code>) haven't changed
+ * can still be {@link #readUnchanged(Map) read} from the snapshot.
+ */
+public class DatabaseSnapshot {
+    /**
+     * Name of the snapshot file in the output directory
+     */
+    public static final String FILE_NAME = "schemaspy.snapshot";
+    private static final String MAGIC = "SchemaSpy snapshot";
+    private static final int FORMAT_VERSION = 2;
+
+    private static final byte ID_NULL = 0;
+    private static final byte ID_NUMBER = 1;
+    private static final byte ID_STRING = 2;
+
+    private final Database db;
+    private final File file;
+    private final String key;
+    private final String schemaVersion;
+    private Map<String, String> changeMarkers = new HashMap<String, String>();
+    private Snapshot pending;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+
+    /**
+     * @param db the database that the snapshot is of
+     * @param file
+     * @param key identifies the database and the options that affect what's loaded
+     * @param schemaVersion value that changes whenever the schema does,
+     *          <code>null</code> if unknown (in which case the snapshot can't be {@link #read() read})
+     */
+    public DatabaseSnapshot(Database db, File file, String key, String schemaVersion) {
+        this.db = db;
+        this.file = file;
+        this.key = key;
+        this.schemaVersion = schemaVersion;
+    }
+
+    /**
+     * Populate the database from the snapshot.
+     *
+     * @return <code>true</code> if it was populated, <code>false</code> if there
+     *          isn't a usable snapshot (in which case the database hasn't been touched)
+     */
+    public boolean read() {
+        long start = System.currentTimeMillis();
+        Snapshot snapshot = load();
+        if (snapshot == null)
+            return false;
+
+        if (schemaVersion == null) {
+            logger.info("Not using snapshot " + file + " since the schema's version couldn't be determined");
+            return false;
+        }
+
+        if (!schemaVersion.equals(snapshot.schemaVersion)) {
+            logger.info("Not using snapshot " + file + " since the schema has changed");
+            return false;
+        }
+
+        try {
+            snapshot.apply(null);
+            snapshot.connect();
+            for (Routine routine : snapshot.routines)
+                db.addRoutine(routine);
+        } catch (SQLException exc) {
+            logger.warning("Failed to read snapshot " + file + ": " + exc);
+            return false;
+        }
+
+        if (fineEnabled)
+            logger.fine("Read " + snapshot + " from " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+        return true;
+    }
+
+    /**
+     * Populate the database with the tables and views from the snapshot whose
+     * change markers are the same as the specified ones (plus all of the remote tables).
+     * Everything else (including routines) is left to be loaded from the database.<p/>
+     *
+     * The relationships of the unchanged tables have to be
+     * {@link #connectUnchanged() connected} after the changed ones have been loaded.
+     *
+     * @param currentMarkers change markers keyed by table/view name
+     * @return the names of the tables and views that were read from the snapshot,
+     *          or <code>null</code> if there isn't a usable snapshot
+     */
+    public Set<String> readUnchanged(Map<String, String> currentMarkers) {
+        Snapshot snapshot = load();
+        if (snapshot == null)
+            return null;
+
+        Set<String> unchanged = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, String> marker : snapshot.changeMarkers.entrySet()) {
+            String current = currentMarkers.get(marker.getKey());
+            if (current != null && current.equals(marker.getValue()))
+                unchanged.add(marker.getKey());
+        }
+
+        try {
+            snapshot.apply(unchanged);
+        } catch (SQLException exc) {
+            logger.warning("Failed to read snapshot " + file + ": " + exc);
+            return null;
+        }
+
+        pending = snapshot;
+        logger.info("Reusing the details of " + unchanged.size() + " unchanged tables/views from " + file);
+        return unchanged;
+    }
+
+    /**
+     * Connect the foreign keys of the tables that were read by {@link #readUnchanged(Map)}.
+     * Keys that reference tables that no longer exist are dropped.
+     *
+     * @throws SQLException
+     */
+    public void connectUnchanged() throws SQLException {
+        if (pending != null) {
+            pending.connect();
+            pending = null;
+        }
+    }
+
+    /**
+     * Change markers of the tables and views (keyed by name) to be included in the next
+     * {@link #write()}.
+     *
+     * @param changeMarkers
+     */
+    public void setChangeMarkers(Map<String, String> changeMarkers) {
+        this.changeMarkers = changeMarkers;
+    }
+
+    /**
+     * Read the whole snapshot before touching the database
+     * so that a corrupt file doesn't leave it half populated.
+     *
+     * @return <code>null</code> if there isn't a usable snapshot
+     */
+    private Snapshot load() {
+        if (!file.isFile())
+            return null;
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION) {
+                logger.info("Ignoring snapshot " + file + " written by a different version");
+                return null;
+            }
+
+            if (!key.equals(readString(in))) {
+                logger.info("Ignoring snapshot " + file + " of a different database or options");
+                return null;
+            }
+
+            return readSnapshot(in);
+        } catch (IOException exc) {
+            logger.warning("Failed to read snapshot " + file + ": " + exc);
+            return null;
+        } catch (SQLException exc) {
+            logger.warning("Failed to read snapshot " + file + ": " + exc);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    /**
+     * Write the database's current state to the snapshot.
+     * Failures are logged rather than thrown since the snapshot is just an optimization.
+     */
+    public void write() {
+        long start = System.currentTimeMillis();
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+            out.writeUTF(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(key, out);
+            writeString(schemaVersion, out);
+
+            writeTables(db.getRemoteTables(), out);
+            writeTables(db.getTables(), out);
+            writeTables(db.getViews(), out);
+
+            Collection<Table> all = new ArrayList<Table>(db.getRemoteTables());
+            all.addAll(db.getTables());
+            all.addAll(db.getViews());
+            writeForeignKeys(all, out);
+
+            writeRoutines(db.getRoutines(), out);
+
+            out.writeInt(changeMarkers.size());
+            for (Map.Entry<String, String> marker : changeMarkers.entrySet()) {
+                writeString(marker.getKey(), out);
+                writeString(marker.getValue(), out);
+            }
+
+            out.close();
+            out = null;
+
+            // replace the old one only after the new one has been completely written
+            file.delete();
+            if (!tmp.renameTo(file))
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+
+            if (fineEnabled)
+                logger.fine("Wrote snapshot " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (IOException exc) {
+            logger.warning("Failed to write snapshot " + file + ": " + exc);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignore) {}
+            }
+            tmp.delete();
+        }
+    }
+
+    private void writeTables(Collection<? extends Table> tables, DataOutputStream out) throws IOException {
+        out.writeInt(tables.size());
+
+        for (Table table : tables) {
+            writeString(table.getCatalog(), out);
+            writeString(table.getSchema(), out);
+            writeString(table.getName(), out);
+            writeString(table.getComments(), out);
+            writeId(table.getId(), out);
+            if (table.isRemote()) {
+                writeString(((RemoteTable)table).getBaseContainer(), out);
+                out.writeBoolean(table.isLightweight());
+            }
+            if (table.isView())
+                writeString(table.getViewSql(), out);
+
+            List<TableColumn> columns = table.getColumns();
+            out.writeInt(columns.size());
+            for (TableColumn column : columns) {
+                writeString(column.getName(), out);
+                writeId(column.getId(), out);
+                writeString(column.getType(), out);
+                out.writeInt(column.getLength());
+                out.writeInt(column.getDecimalDigits());
+                out.writeBoolean(column.isNullable());
+                out.writeBoolean(column.isAutoUpdated());
+                Object defaultValue = column.getDefaultValue();
+                writeString(defaultValue == null ? null : defaultValue.toString(), out);
+                writeString(column.getComments(), out);
+            }
+
+            // don't force lightweight tables to load what they've deferred
+            boolean lightweight = table.isLightweight();
+
+            Collection<TableIndex> indexes = lightweight ? new ArrayList<TableIndex>() : table.getIndexes();
+            out.writeInt(indexes.size());
+            for (TableIndex index : indexes) {
+                writeString(index.getName(), out);
+                writeId(index.getId(), out);
+                out.writeBoolean(index.isUnique());
+                out.writeBoolean(index.isPrimaryKey());
+                out.writeInt(index.getColumns().size());
+                for (TableColumn column : index.getColumns()) {
+                    writeString(column.getName(), out);
+                    out.writeBoolean(index.isAscending(column));
+                }
+            }
+
+            List<TableColumn> primaryColumns = lightweight ? new ArrayList<TableColumn>() : table.getPrimaryColumns();
+            out.writeInt(primaryColumns.size());
+            for (TableColumn column : primaryColumns)
+                writeString(column.getName(), out);
+
+            Map<String, String> checkConstraints = table.getCheckConstraints();
+            out.writeInt(checkConstraints.size());
+            for (Map.Entry<String, String> constraint : checkConstraints.entrySet()) {
+                writeString(constraint.getKey(), out);
+                writeString(constraint.getValue(), out);
+            }
+
+            out.writeInt(table.getPartitions().size());
+            for (TablePartition partition : table.getPartitions()) {
+                writeString(partition.getName(), out);
+                writeString(partition.getBound(), out);
+            }
+        }
+    }
+
+    private void writeForeignKeys(Collection<Table> tables, DataOutputStream out) throws IOException {
+        List<ForeignKeyConstraint> foreignKeys = new ArrayList<ForeignKeyConstraint>();
+        for (Table table : tables) {
+            for (ForeignKeyConstraint foreignKey : table.getForeignKeys()) {
+                if (foreignKey.getParentTable() != null && foreignKey.getName() != null)
+                    foreignKeys.add(foreignKey);
+            }
+        }
+
+        out.writeInt(foreignKeys.size());
+        for (ForeignKeyConstraint foreignKey : foreignKeys) {
+            Table child = foreignKey.getChildTable();
+            Table parent = foreignKey.getParentTable();
+            writeString(child.getCatalog(), out);
+            writeString(child.getSchema(), out);
+            writeString(child.getName(), out);
+            out.writeBoolean(child.isRemote());
+            writeString(foreignKey.getName(), out);
+            writeString(parent.getCatalog(), out);
+            writeString(parent.getSchema(), out);
+            writeString(parent.getName(), out);
+            out.writeBoolean(parent.isRemote());
+            out.writeInt(foreignKey.getUpdateRule());
+            out.writeInt(foreignKey.getDeleteRule());
+
+            List<TableColumn> childColumns = foreignKey.getChildColumns();
+            List<TableColumn> parentColumns = foreignKey.getParentColumns();
+            int numColumns = Math.min(childColumns.size(), parentColumns.size());
+            out.writeInt(numColumns);
+            for (int i = 0; i < numColumns; ++i) {
+                writeString(childColumns.get(i).getName(), out);
+                writeString(parentColumns.get(i).getName(), out);
+            }
+        }
+    }
+
+    private void writeRoutines(Collection<Routine> routines, DataOutputStream out) throws IOException {
+        out.writeInt(routines.size());
+        for (Routine routine : routines) {
+            writeString(routine.getName(), out);
+            writeString(routine.getType(), out);
+            writeString(routine.getReturnType(), out);
+            writeString(routine.getDefinitionLanguage(), out);
+            writeString(routine.getDefinition(), out);
+            out.writeBoolean(routine.isDeterministic());
+            writeString(routine.getDataAccess(), out);
+            writeString(routine.getSecurityType(), out);
+            writeString(routine.getComment(), out);
+
+            List<RoutineParameter> params = routine.getParameters();
+            out.writeInt(params.size());
+            for (RoutineParameter param : params) {
+                writeString(param.getName(), out);
+                writeString(param.getType(), out);
+                writeString(param.getMode(), out);
+            }
+        }
+    }
+
+    private Snapshot readSnapshot(DataInputStream in) throws IOException, SQLException {
+        Snapshot snapshot = new Snapshot();
+        snapshot.schemaVersion = readString(in);
+        snapshot.remoteTables = readTables(in, true, false);
+        snapshot.tables = readTables(in, false, false);
+        snapshot.views = readTables(in, false, true);
+
+        int numForeignKeys = in.readInt();
+        snapshot.foreignKeys = new ArrayList<ForeignKeyRecord>(numForeignKeys);
+        for (int i = 0; i < numForeignKeys; ++i) {
+            ForeignKeyRecord foreignKey = new ForeignKeyRecord();
+            foreignKey.childCatalog = readString(in);
+            foreignKey.childSchema = readString(in);
+            foreignKey.childName = readString(in);
+            foreignKey.childIsRemote = in.readBoolean();
+            foreignKey.name = readString(in);
+            foreignKey.parentCatalog = readString(in);
+            foreignKey.parentSchema = readString(in);
+            foreignKey.parentName = readString(in);
+            foreignKey.parentIsRemote = in.readBoolean();
+            foreignKey.updateRule = in.readInt();
+            foreignKey.deleteRule = in.readInt();
+            int numColumns = in.readInt();
+            foreignKey.columnNames = new String[numColumns * 2];
+            for (int col = 0; col < foreignKey.columnNames.length; ++col)
+                foreignKey.columnNames[col] = readString(in);
+            snapshot.foreignKeys.add(foreignKey);
+        }
+
+        int numRoutines = in.readInt();
+        snapshot.routines = new ArrayList<Routine>(numRoutines);
+        for (int i = 0; i < numRoutines; ++i) {
+            Routine routine = new Routine(readString(in), readString(in), readString(in),
+                                            readString(in), readString(in), in.readBoolean(),
+                                            readString(in), readString(in), readString(in));
+            int numParams = in.readInt();
+            for (int param = 0; param < numParams; ++param)
+                routine.addParameter(new RoutineParameter(readString(in), readString(in), readString(in)));
+            snapshot.routines.add(routine);
+        }
+
+        int numMarkers = in.readInt();
+        snapshot.changeMarkers = new HashMap<String, String>(numMarkers);
+        for (int i = 0; i < numMarkers; ++i)
+            snapshot.changeMarkers.put(readString(in), readString(in));
+
+        return snapshot;
+    }
+
+    private List<Table> readTables(DataInputStream in, boolean remote, boolean views) throws IOException, SQLException {
+        int numTables = in.readInt();
+        List<Table> tables = new ArrayList<Table>(numTables);
+
+        for (int i = 0; i < numTables; ++i) {
+            String catalog = readString(in);
+            String schema = readString(in);
+            String name = readString(in);
+            String comments = readString(in);
+            Object id = readId(in);
+
+            Table table;
+            boolean lightweight = false;
+            if (remote) {
+                String baseContainer = readString(in);
+                lightweight = in.readBoolean();
+                // always constructed as lightweight so it doesn't query anything
+                table = new RemoteTable(db, catalog, schema, name, baseContainer, true);
+                table.setComments(comments);
+            } else if (views) {
+                table = new View(db, catalog, schema, name, comments, readString(in), false);
+            } else {
+                table = new Table(db, catalog, schema, name, comments, false);
+            }
+            table.setId(id);
+
+            int numColumns = in.readInt();
+            for (int col = 0; col < numColumns; ++col) {
+                table.addColumn(new TableColumn(table, readString(in), readId(in), readString(in),
+                                                in.readInt(), in.readInt(), in.readBoolean(), in.readBoolean(),
+                                                readString(in), readString(in)));
+            }
+
+            int numIndexes = in.readInt();
+            for (int idx = 0; idx < numIndexes; ++idx) {
+                String indexName = readString(in);
+                Object indexId = readId(in);
+                TableIndex index = new TableIndex(indexName, in.readBoolean());
+                index.setId(indexId);
+                index.setIsPrimaryKey(in.readBoolean());
+                int numIndexColumns = in.readInt();
+                for (int col = 0; col < numIndexColumns; ++col) {
+                    TableColumn column = table.getColumn(readString(in));
+                    index.addColumn(column, in.readBoolean() ? "A" : "D");
+                }
+                table.addIndex(index);
+            }
+
+            int numPrimaryColumns = in.readInt();
+            for (int col = 0; col < numPrimaryColumns; ++col) {
+                TableColumn column = table.getColumn(readString(in));
+                if (column != null)
+                    table.setPrimaryColumn(column);
+            }
+
+            int numCheckConstraints = in.readInt();
+            for (int check = 0; check < numCheckConstraints; ++check)
+                table.addCheckConstraint(readString(in), readString(in));
+
+            int numPartitions = in.readInt();
+            for (int part = 0; part < numPartitions; ++part)
+                table.addPartition(new TablePartition(readString(in), readString(in)));
+
+            if (remote && !lightweight)
+                ((RemoteTable)table).setDetailsLoaded();
+
+            tables.add(table);
+        }
+
+        return tables;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeId(Object id, DataOutputStream out) throws IOException {
+        if (id == null) {
+            out.writeByte(ID_NULL);
+        } else if (id instanceof Number) {
+            out.writeByte(ID_NUMBER);
+            out.writeLong(((Number)id).longValue());
+        } else {
+            out.writeByte(ID_STRING);
+            writeString(id.toString(), out);
+        }
+    }
+
+    private static Object readId(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case ID_NULL:
+                return null;
+            case ID_NUMBER:
+                long id = in.readLong();
+                if (id >= Integer.MIN_VALUE && id <= Integer.MAX_VALUE)
+                    return new Integer((int)id);
+                return new Long(id);
+            case ID_STRING:
+                return readString(in);
+            default:
+                throw new IOException("Corrupt snapshot");
+        }
+    }
+
+    /**
+     * Everything that was read from a snapshot, ready to be applied to the database
+     */
+    private class Snapshot {
+        private String schemaVersion;
+        private List<Table> remoteTables;
+        private List<Table> tables;
+        private List<Table> views;
+        private List<ForeignKeyRecord> foreignKeys;
+        private List<Routine> routines;
+        private Map<String, String> changeMarkers;
+        private final Set<Table> applied = new HashSet<Table>();
+
+        /**
+         * Add the tables to the database
+         *
+         * @param only names of the tables and views to add, <code>null</code> for all
+         */
+        void apply(Set<String> only) throws SQLException {
+            for (Table table : remoteTables) {
+                db.addRemoteTable((RemoteTable)table);
+                applied.add(table);
+            }
+            for (Table table : tables) {
+                if (only == null || only.contains(table.getName())) {
+                    db.addTable(table);
+                    applied.add(table);
+                }
+            }
+            for (Table table : views) {
+                if (only == null || only.contains(table.getName())) {
+                    db.addView((View)table);
+                    applied.add(table);
+                }
+            }
+        }
+
+        /**
+         * Connect the foreign keys of the tables that were added
+         */
+        void connect() throws SQLException {
+            Map<String, Table> locals = db.getLocals();
+            for (ForeignKeyRecord foreignKey : foreignKeys) {
+                Table child;
+                if (foreignKey.childIsRemote)
+                    child = db.getRemoteTable(foreignKey.childCatalog, foreignKey.childSchema, foreignKey.childName);
+                else
+                    child = locals.get(foreignKey.childName);
+                if (child == null || !applied.contains(child))
+                    continue;
+
+                // the table that it referenced has been dropped
+                if (!foreignKey.parentIsRemote && locals.get(foreignKey.parentName) == null)
+                    continue;
+
+                for (int i = 0; i < foreignKey.columnNames.length; i += 2) {
+                    child.addForeignKey(foreignKey.name, foreignKey.columnNames[i],
+                                        foreignKey.parentCatalog, foreignKey.parentSchema, foreignKey.parentName,
+                                        foreignKey.columnNames[i + 1],
+                                        foreignKey.updateRule, foreignKey.deleteRule, locals);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return tables.size() + " tables, " + views.size() + " views, " +
+                    remoteTables.size() + " remote tables and " + routines.size() + " routines";
+        }
+    }
+
+    private static class ForeignKeyRecord {
+        private String childCatalog;
+        private String childSchema;
+        private String childName;
+        private boolean childIsRemote;
+        private String name;
+        private String parentCatalog;
+        private String parentSchema;
+        private String parentName;
+        private boolean parentIsRemote;
+        private int updateRule;
+        private int deleteRule;
+        private String[] columnNames;  // pairs of child and parent column names
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The results of a metadata query run by a {@link MetadataQueryExecutor}.<p/>
+ *
+ * Columns are looked up by name (case insensitive), but the names are
+ * only resolved to indexes once per query rather than for every row.
+ */
+public class MetadataQuery {
+    private final MetadataQueryExecutor executor;
+    private final PreparedStatement stmt;
+    private final ResultSet rs;
+    private final String sql;
+    private final long started;
+    private Map<String, Integer> columnIndexes;
+    private int numRows;
+    private boolean closed;
+
+    MetadataQuery(MetadataQueryExecutor executor, PreparedStatement stmt, ResultSet rs, String sql, long started) {
+        this.executor = executor;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.sql = sql;
+        this.started = started;
+    }
+
+    /**
+     * Move to the next row.
+     *
+     * @return <code>false</code> if there aren't any more rows
+     * @throws SQLException
+     */
+    public boolean next() throws SQLException {
+        if (rs.next()) {
+            ++numRows;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param columnName
+     * @return <code>true</code> if the results include the specified column
+     * @throws SQLException
+     */
+    public boolean hasColumn(String columnName) throws SQLException {
+        return getColumnIndexes().containsKey(columnName.toLowerCase());
+    }
+
+    public String getString(String columnName) throws SQLException {
+        return rs.getString(indexOf(columnName));
+    }
+
+    /**
+     * Some databases don't play nice with their metadata.
+     * This returns <code>null</code> if the column doesn't exist.
+     */
+    public String getOptionalString(String columnName) throws SQLException {
+        Integer index = getColumnIndexes().get(columnName.toLowerCase());
+        return index == null ? null : rs.getString(index.intValue());
+    }
+
+    public Object getObject(String columnName) throws SQLException {
+        return rs.getObject(indexOf(columnName));
+    }
+
+    public boolean getBoolean(String columnName) throws SQLException {
+        return rs.getBoolean(indexOf(columnName));
+    }
+
+    public short getShort(String columnName) throws SQLException {
+        return rs.getShort(indexOf(columnName));
+    }
+
+    public long getLong(String columnName) throws SQLException {
+        return rs.getLong(indexOf(columnName));
+    }
+
+    /**
+     * @param columnIndex 1-based
+     */
+    public long getLong(int columnIndex) throws SQLException {
+        return rs.getLong(columnIndex);
+    }
+
+    /**
+     * @return <code>true</code> if the last column read was <code>null</code>
+     * @throws SQLException
+     */
+    public boolean wasNull() throws SQLException {
+        return rs.wasNull();
+    }
+
+    /**
+     * The underlying results for code that's shared with
+     * {@link java.sql.DatabaseMetaData}-based queries
+     */
+    public ResultSet getResultSet() {
+        return rs;
+    }
+
+    /**
+     * Close the query and record how long it took.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+
+        try {
+            rs.close();
+        } catch (SQLException ignore) {}
+        try {
+            stmt.close();
+        } catch (SQLException ignore) {}
+
+        executor.completed(sql, System.nanoTime() - started, numRows);
+    }
+
+    private int indexOf(String columnName) throws SQLException {
+        Integer index = getColumnIndexes().get(columnName.toLowerCase());
+        if (index == null)
+            throw new SQLException("Column '" + columnName + "' not found in results of " + (sql == null ? "query" : sql));
+        return index.intValue();
+    }
+
+    private Map<String, Integer> getColumnIndexes() throws SQLException {
+        if (columnIndexes == null) {
+            ResultSetMetaData rsMeta = rs.getMetaData();
+            columnIndexes = new HashMap<String, Integer>();
+            for (int i = rsMeta.getColumnCount(); i > 0; --i)
+                columnIndexes.put(rsMeta.getColumnLabel(i).toLowerCase(), Integer.valueOf(i)); // first one wins
+        }
+
+        return columnIndexes;
+    }
+}
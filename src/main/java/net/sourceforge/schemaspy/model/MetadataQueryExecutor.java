@@ -0,0 +1,373 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the SQL that queries a {@link Database}'s metadata.<p/>
+ *
+ * Everything that queries metadata with SQL goes through here so that:
+ * <ul>
+ * <li>SQL templates with named parameters (<code>:schema</code>, <code>:table</code>, etc.)
+ *      are only parsed once regardless of how many tables they're run against
+ * <li>the <code>metadataFetchSize</code> and <code>metadataQueryTimeout</code>
+ *      in the .properties are applied consistently (queries with their own
+ *      timeout, like row counts, aren't subject to <code>metadataQueryTimeout</code>)
+ * <li>we know where the time went
+ * </ul>
+ */
+public class MetadataQueryExecutor {
+    private final Database db;
+    private final Connection connection;
+    private final int fetchSize;
+    private final int queryTimeout;
+    private final Map<String, ParsedSql> parsed = new ConcurrentHashMap<String, ParsedSql>();
+    private final Map<String, String> sqlNames = new HashMap<String, String>();
+    private final Map<String, Stats> stats = new TreeMap<String, Stats>();
+    private volatile boolean fetchSizeSupported = true;
+    private volatile boolean queryTimeoutSupported = true;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+    private final boolean finerEnabled = logger.isLoggable(Level.FINER);
+
+    /**
+     * @param db the database whose metadata is being queried
+     * @param dbProperties the .properties that contain the SQL and any
+     *          <code>metadataFetchSize</code> or <code>metadataQueryTimeout</code> (in seconds)
+     */
+    public MetadataQueryExecutor(Database db, Properties dbProperties) {
+        this(db, null, dbProperties);
+    }
+
+    /**
+     * For queries that aren't about a specific {@link Database}
+     * (such as which schemas are populated), so their SQL can't
+     * contain any named parameters.
+     *
+     * @param connection
+     * @param dbProperties
+     */
+    public MetadataQueryExecutor(Connection connection, Properties dbProperties) {
+        this(null, connection, dbProperties);
+    }
+
+    private MetadataQueryExecutor(Database db, Connection connection, Properties dbProperties) {
+        this.db = db;
+        this.connection = connection;
+        fetchSize = getInt(dbProperties, "metadataFetchSize");
+        queryTimeout = getInt(dbProperties, "metadataQueryTimeout");
+
+        // lets us report timings by the name of the SQL rather than the SQL itself
+        for (Object key : dbProperties.keySet()) {
+            String name = key.toString();
+            if (name.endsWith("Sql"))
+                sqlNames.put(dbProperties.getProperty(name), name);
+        }
+    }
+
+    private static int getInt(Properties dbProperties, String name) {
+        String value = dbProperties.getProperty(name);
+        if (value == null || value.trim().length() == 0)
+            return 0;
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException badValue) {
+            throw new InvalidConfigurationException("Invalid " + name + " value '" + value + "'.  Must be a number");
+        }
+    }
+
+    /**
+     * Run SQL (typically from the .properties) that can contain the following named parameters:
+     * <ol>
+     * <li>:schema - replaced with the name of the schema
+     * <li>:owner - alias for :schema
+     * <li>:table - replaced with the name of the table
+     * <li>:view - alias for :table
+     * <li>:tableFilter - replaced with a <code>LIKE</code> pattern that the tables of interest match
+     * </ol>
+     *
+     * The returned query must be {@link MetadataQuery#close() closed}.
+     *
+     * @param sql
+     * @param tableName <code>null</code> if the SQL doesn't deal with <code>Table</code>-level details.
+     * @return
+     * @throws SQLException
+     */
+    public MetadataQuery execute(String sql, String tableName) throws SQLException {
+        return execute(sql, tableName, queryTimeout);
+    }
+
+    /**
+     * Same as {@link #execute(String, String)}, but with its own query timeout
+     * rather than the <code>metadataQueryTimeout</code>.
+     *
+     * @param sql
+     * @param tableName
+     * @param queryTimeout number of seconds that the query is allowed to run,
+     *          or <code>0</code> if it's unlimited
+     * @return
+     * @throws SQLException
+     */
+    public MetadataQuery execute(String sql, String tableName, int queryTimeout) throws SQLException {
+        PreparedStatement stmt = prepare(sql, tableName);
+        return execute(stmt, sql, queryTimeout);
+    }
+
+    /**
+     * Run SQL that was generated on the fly (with identifiers already
+     * in place) rather than specified in the .properties.<p/>
+     *
+     * The returned query must be {@link MetadataQuery#close() closed}.
+     *
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    public MetadataQuery executeLiteral(String sql) throws SQLException {
+        return executeLiteral(sql, queryTimeout);
+    }
+
+    /**
+     * Same as {@link #executeLiteral(String)}, but with its own query timeout
+     * rather than the <code>metadataQueryTimeout</code>.
+     *
+     * @param sql
+     * @param queryTimeout number of seconds that the query is allowed to run,
+     *          or <code>0</code> if it's unlimited
+     * @return
+     * @throws SQLException
+     */
+    public MetadataQuery executeLiteral(String sql, int queryTimeout) throws SQLException {
+        if (finerEnabled)
+            logger.finer(sql);
+        PreparedStatement stmt = configure(getConnection().prepareStatement(sql));
+        return execute(stmt, null, queryTimeout);
+    }
+
+    private MetadataQuery execute(PreparedStatement stmt, String sql, int queryTimeout) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            setQueryTimeout(stmt, queryTimeout);
+            ResultSet rs = stmt.executeQuery();
+            if (db != null)
+                db.queryExecuted(System.nanoTime() - start);
+            return new MetadataQuery(this, stmt, rs, sql, start);
+        } catch (SQLException exc) {
+            stmt.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Prepare SQL that can contain the named parameters described in {@link #execute(String, String)}.
+     *
+     * @param sql
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStatement(String sql, String tableName) throws SQLException {
+        PreparedStatement stmt = prepare(sql, tableName);
+        setQueryTimeout(stmt, queryTimeout);
+        return stmt;
+    }
+
+    private PreparedStatement prepare(String sql, String tableName) throws SQLException {
+        ParsedSql template = parse(sql);
+        List<String> values = template.getValues(getNamedParams(tableName), sql);
+        if (fineEnabled)
+            logger.fine(template.sql + " " + values);
+
+        PreparedStatement stmt = configure(getConnection().prepareStatement(template.sql));
+
+        try {
+            for (int i = 0; i < values.size(); ++i) {
+                stmt.setString(i + 1, values.get(i));
+            }
+        } catch (SQLException exc) {
+            stmt.close();
+            throw exc;
+        }
+
+        return stmt;
+    }
+
+    /**
+     * Apply the fetch size.  Drivers that don't support it
+     * are only given one chance to complain.
+     */
+    private PreparedStatement configure(PreparedStatement stmt) {
+        if (fetchSize > 0 && fetchSizeSupported) {
+            try {
+                stmt.setFetchSize(fetchSize);
+            } catch (SQLException unsupported) {
+                fetchSizeSupported = false;
+                logger.fine("Driver doesn't support metadataFetchSize: " + unsupported);
+            }
+        }
+
+        return stmt;
+    }
+
+    /**
+     * Apply a query timeout (if any).  Drivers that don't support
+     * them are only given one chance to complain.
+     */
+    private void setQueryTimeout(PreparedStatement stmt, int seconds) {
+        if (seconds > 0 && queryTimeoutSupported) {
+            try {
+                stmt.setQueryTimeout(seconds);
+            } catch (SQLException unsupported) {
+                queryTimeoutSupported = false;
+                logger.fine("Driver doesn't support query timeouts: " + unsupported);
+            }
+        }
+    }
+
+    private ParsedSql parse(String sql) {
+        ParsedSql template = parsed.get(sql);
+        if (template == null) {
+            template = new ParsedSql(sql);
+            parsed.put(sql, template);
+        }
+        return template;
+    }
+
+    private Connection getConnection() {
+        return db != null ? db.getConnection() : connection;
+    }
+
+    private Map<String, String> getNamedParams(String tableName) {
+        Map<String, String> namedParams = new HashMap<String, String>();
+        if (db == null)
+            return namedParams;
+
+        String schema = db.getSchema();
+        if (schema == null)
+            schema = db.getName(); // some 'schema-less' db's treat the db name like a schema (unusual case)
+        namedParams.put(":schema", schema);
+        namedParams.put(":owner", schema); // alias for :schema
+        namedParams.put(":tableFilter", db.getTableFilter());
+        if (tableName != null) {
+            namedParams.put(":table", tableName);
+            namedParams.put(":view", tableName); // alias for :table
+        }
+        return namedParams;
+    }
+
+    /**
+     * Called by a {@link MetadataQuery} when it's been closed
+     */
+    void completed(String sql, long elapsedNanos, int numRows) {
+        String name = sql == null ? "generated SQL" : sqlNames.get(sql);
+        if (name == null)
+            name = "custom SQL";
+
+        if (finerEnabled)
+            logger.finer(name + " returned " + numRows + " rows in " + elapsedNanos / 1000000 + "ms");
+
+        synchronized (stats) {
+            Stats stat = stats.get(name);
+            if (stat == null) {
+                stat = new Stats();
+                stats.put(name, stat);
+            }
+            stat.add(elapsedNanos, numRows);
+        }
+    }
+
+    /**
+     * Log how long each type of metadata query took (at <code>FINE</code>)
+     */
+    public void logStats() {
+        if (!fineEnabled)
+            return;
+
+        synchronized (stats) {
+            for (Map.Entry<String, Stats> entry : stats.entrySet())
+                logger.fine(entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    /**
+     * SQL with its named parameters replaced with question marks
+     */
+    private static class ParsedSql {
+        private final String sql;
+        private final List<String> paramNames = new ArrayList<String>();
+
+        ParsedSql(String namedSql) {
+            StringBuilder buf = new StringBuilder(namedSql);
+            int nextColon = buf.indexOf(":");
+            while (nextColon != -1) {
+                String paramName = new StringTokenizer(buf.substring(nextColon), " ,\"')").nextToken();
+                paramNames.add(paramName);
+                buf.replace(nextColon, nextColon + paramName.length(), "?"); // replace with a ?
+                nextColon = buf.indexOf(":", nextColon);
+            }
+            sql = buf.toString();
+        }
+
+        List<String> getValues(Map<String, String> namedParams, String namedSql) {
+            List<String> values = new ArrayList<String>(paramNames.size());
+            for (String paramName : paramNames) {
+                String paramValue = namedParams.get(paramName);
+                if (paramValue == null)
+                    throw new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + namedSql + "'");
+                values.add(paramValue);
+            }
+            return values;
+        }
+    }
+
+    private static class Stats {
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        private long numRows;
+
+        void add(long elapsedNanos, int rows) {
+            ++count;
+            totalNanos += elapsedNanos;
+            maxNanos = Math.max(maxNanos, elapsedNanos);
+            numRows += rows;
+        }
+
+        @Override
+        public String toString() {
+            return count + " queries returned " + numRows + " rows in " + totalNanos / 1000000 +
+                    "ms (longest " + maxNanos / 1000000 + "ms)";
+        }
+    }
+}
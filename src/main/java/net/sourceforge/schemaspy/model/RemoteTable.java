@@ -18,21 +18,33 @@
  */
 package net.sourceforge.schemaspy.model;
 
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sourceforge.schemaspy.Config;
 
 /**
  * A table that's outside of the default schema but is referenced
- * by or references a table in the default schema.
+ * by or references a table in the default schema.<p/>
+ *
+ * A <i>lightweight</i> remote table only loads the columns that are involved
+ * in relationships (as they're referenced).  Its other columns, indexes and
+ * primary key aren't loaded until something asks for them.
  *
  * @author John Currier
  */
 public class RemoteTable extends Table {
     private final String baseContainer;
+    private final boolean lightweight;
+    private final Set<String> columnsQueried = new HashSet<String>();
+    private volatile boolean detailsLoaded;
     private final static Logger logger = Logger.getLogger(RemoteTable.class.getName());
     private final static boolean finerEnabled = logger.isLoggable(Level.FINER);
 
@@ -45,8 +57,161 @@ public class RemoteTable extends Table {
      * @throws SQLException
      */
     public RemoteTable(Database db, String catalog, String schema, String name, String baseContainer) throws SQLException {
-        super(db, catalog, schema, name, null);
+        this(db, catalog, schema, name, baseContainer, false);
+    }
+
+    /**
+     * @param db
+     * @param catalog
+     * @param schema
+     * @param name
+     * @param baseContainer
+     * @param lightweight <code>true</code> if only the columns involved in relationships
+     *          should be loaded up front
+     * @throws SQLException
+     */
+    public RemoteTable(Database db, String catalog, String schema, String name, String baseContainer, boolean lightweight) throws SQLException {
+        super(db, catalog, schema, name, null, !lightweight);
         this.baseContainer = baseContainer;
+        this.lightweight = lightweight;
+    }
+
+    /**
+     * @return the schema (or catalog) being analyzed that this table is related to
+     */
+    String getBaseContainer() {
+        return baseContainer;
+    }
+
+    /**
+     * Called when everything that a lightweight table would have deferred
+     * has been provided by other means (e.g. a {@link DatabaseSnapshot}).
+     */
+    void setDetailsLoaded() {
+        detailsLoaded = true;
+    }
+
+    /**
+     * Lightweight tables load the specified column if it hasn't been loaded yet.
+     */
+    @Override
+    public TableColumn getColumn(String columnName) {
+        TableColumn column = super.getColumn(columnName);
+        if (column == null && isDeferred() && columnName != null && !isLogical()) {
+            loadColumn(columnName);
+            column = super.getColumn(columnName);
+        }
+
+        return column;
+    }
+
+    @Override
+    public Set<TableIndex> getIndexes() {
+        loadDetails();
+        return super.getIndexes();
+    }
+
+    @Override
+    public TableIndex getIndex(String indexName) {
+        loadDetails();
+        return super.getIndex(indexName);
+    }
+
+    @Override
+    public List<TableColumn> getPrimaryColumns() {
+        loadDetails();
+        return super.getPrimaryColumns();
+    }
+
+    /**
+     * Load a single column of a lightweight table
+     */
+    private synchronized void loadColumn(String columnName) {
+        if (!columnsQueried.add(columnName.toUpperCase()))
+            return; // already tried
+
+        ResultSet rs = null;
+
+        // some drivers can't handle concurrent metadata queries
+        Lock lock = db.getMetaDataLock();
+        if (lock != null)
+            lock.lock();
+
+        try {
+            DatabaseMetaData meta = db.getMetaData();
+            rs = meta.getColumns(getCatalog(), getSchema(), getName(), escapePattern(columnName, meta.getSearchStringEscape()));
+            boolean hasAutoIncrement = hasAutoIncrement(rs);
+
+            while (rs.next()) {
+                // the names are patterns, so make sure it's really the one we want
+                if (getName().equalsIgnoreCase(rs.getString("TABLE_NAME")) && columnName.equalsIgnoreCase(rs.getString("COLUMN_NAME")))
+                    addColumn(rs, hasAutoIncrement);
+            }
+        } catch (SQLException exc) {
+            logger.warning("Failed to collect details of column " + columnName + " of remote table " + getFullName() + ": " + exc);
+        } finally {
+            try {
+                if (rs != null)
+                    rs.close();
+            } catch (SQLException ignore) {
+            } finally {
+                if (lock != null)
+                    lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Load everything that a lightweight table deferred
+     */
+    private void loadDetails() {
+        if (!isDeferred())
+            return;
+
+        synchronized (this) {
+            if (detailsLoaded)
+                return;
+            detailsLoaded = true;
+
+            if (isLogical())
+                return;
+
+            if (finerEnabled)
+                logger.finer("Loading deferred details of " + getFullName());
+
+            try {
+                initColumns();  // keeps the columns that have already been loaded
+                if (!isAutoUpdateResolved())
+                    initColumnAutoUpdate(false);
+                initIndexes();
+                initPrimaryKeys();
+            } catch (SQLException exc) {
+                logger.warning("Failed to collect details of remote table " + getFullName() + ": " + exc);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if this is a lightweight table whose details haven't been loaded yet.
+     *          Note that this is always <code>false</code> while the superclass is being constructed.
+     */
+    private boolean isDeferred() {
+        return lightweight && !detailsLoaded;
+    }
+
+    private static String escapePattern(String name, String escape) {
+        if (escape == null || escape.length() == 0)
+            return name;
+
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < name.length(); ++i) {
+            char ch = name.charAt(i);
+            if (ch == '_' || ch == '%' || escape.indexOf(ch) != -1)
+                pattern.append(escape);
+            pattern.append(ch);
+        }
+
+        return pattern.toString();
     }
 
     /**
@@ -98,4 +263,9 @@ public class RemoteTable extends Table {
     public boolean isRemote() {
         return true;
     }
+
+    @Override
+    public boolean isLightweight() {
+        return isDeferred();
+    }
 }
@@ -19,7 +19,6 @@
 package net.sourceforge.schemaspy.model;
 
 import java.sql.DatabaseMetaData;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -34,6 +33,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -62,11 +62,14 @@ public class Table implements Comparable<Table> {
     private final CaseInsensitiveMap<TableIndex> indexes = new CaseInsensitiveMap<TableIndex>();
     private       Object id;
     private final Map<String, String> checkConstraints = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private final Set<TablePartition> partitions = new TreeSet<TablePartition>();
     private Long numRows;
+    private boolean numRowsApproximate;
     protected final Database db;
     private       String comments;
     private int maxChildren;
     private int maxParents;
+    private boolean autoUpdateUnresolved; // a column's auto increment status wasn't in its metadata
     private final static Logger logger = Logger.getLogger(Table.class.getName());
     private final static boolean fineEnabled = logger.isLoggable(Level.FINE);
     private final static boolean finerEnabled = logger.isLoggable(Level.FINER);
@@ -82,6 +85,25 @@ public class Table implements Comparable<Table> {
      * @throws SQLException
      */
     public Table(Database db, String catalog, String schema, String name, String comments) throws SQLException {
+        this(db, catalog, schema, name, comments, true);
+    }
+
+    /**
+     * Construct a table, optionally deferring the collection of its columns,
+     * indexes and primary keys to the caller.
+     * {@link Database} uses this when it's able to bulk load those details
+     * for the entire schema instead of querying them one table at a time.
+     *
+     * @param db
+     * @param catalog
+     * @param schema
+     * @param name
+     * @param comments
+     * @param initDetails <code>false</code> if the caller is responsible for
+     *          initializing columns, indexes and primary keys
+     * @throws SQLException
+     */
+    Table(Database db, String catalog, String schema, String name, String comments, boolean initDetails) throws SQLException {
         this.db = db;
         this.catalog = catalog;
         this.schema = schema;
@@ -91,9 +113,13 @@ public class Table implements Comparable<Table> {
         if (fineEnabled)
             logger.fine("Creating " + getClass().getSimpleName() + " " + fullName);
         setComments(comments);
-        initColumns();
-        initIndexes();
-        initPrimaryKeys();
+        if (initDetails) {
+            initColumns();
+            if (!isAutoUpdateResolved())
+                initColumnAutoUpdate(false);
+            initIndexes();
+            initPrimaryKeys();
+        }
     }
 
     /**
@@ -106,6 +132,20 @@ public class Table implements Comparable<Table> {
     public void connectForeignKeys(Map<String, Table> tables) throws SQLException {
         if (finerEnabled)
             logger.finer("Connecting foreign keys to " + getFullName());
+
+        connectImportedKeys(tables);
+        connectExportedKeys();
+    }
+
+    /**
+     * Connect our foreign keys that reference other tables' primary keys.
+     * Note that {@link Database} normally bulk loads these for the whole schema
+     * and only falls back to this on a table-by-table basis.
+     *
+     * @param tables
+     * @throws SQLException
+     */
+    void connectImportedKeys(Map<String, Table> tables) throws SQLException {
         ResultSet rs = null;
 
         try {
@@ -127,10 +167,20 @@ public class Table implements Comparable<Table> {
             if (rs != null)
                 rs.close();
         }
+    }
+
+    /**
+     * Try to find all of the 'remote' tables in other schemas that
+     * point to our primary keys (not necessary in the normal case
+     * as we infer this from the opposite direction).
+     * Note that {@link Database} normally bulk loads these for the whole schema
+     * and only falls back to this on a table-by-table basis.
+     *
+     * @throws SQLException
+     */
+    void connectExportedKeys() throws SQLException {
+        ResultSet rs = null;
 
-        // also try to find all of the 'remote' tables in other schemas that
-        // point to our primary keys (not necessary in the normal case
-        // as we infer this from the opposite direction)
         if (getSchema() != null || getCatalog() != null) {
             try {
                 // get the foreign keys that reference our primary keys
@@ -174,6 +224,35 @@ public class Table implements Comparable<Table> {
         checkConstraints.put(constraintName, text);
     }
 
+    /**
+     * Add a partition (or child table) of this table
+     *
+     * @param partition
+     */
+    public void addPartition(TablePartition partition) {
+        partitions.add(partition);
+    }
+
+    /**
+     * Add a column pair of a foreign key whose parent has already been resolved
+     * (e.g. by {@link XmlDatabaseReader}).
+     */
+    void addForeignKey(String fkName, TableColumn childColumn, TableColumn parentColumn,
+                        int updateRule, int deleteRule) {
+        ForeignKeyConstraint foreignKey = foreignKeys.get(fkName);
+        if (foreignKey == null) {
+            foreignKey = new ForeignKeyConstraint(this, fkName, updateRule, deleteRule);
+
+            foreignKeys.put(fkName, foreignKey);
+        }
+
+        foreignKey.addChildColumn(childColumn);
+        foreignKey.addParentColumn(parentColumn);
+
+        childColumn.addParent(parentColumn, foreignKey);
+        parentColumn.addChild(childColumn, foreignKey);
+    }
+
     /**
      * @param rs ResultSet from {@link DatabaseMetaData#getImportedKeys(String, String, String)}
      * rs.getString("FK_NAME");
@@ -193,8 +272,19 @@ public class Table implements Comparable<Table> {
         if (fkName == null)
             return;
 
-        Pattern include = Config.getInstance().getTableInclusions();
-        Pattern exclude = Config.getInstance().getTableExclusions();
+        Config config = Config.getInstance();
+        String parentContainer = pkSchema != null ? pkSchema : pkCatalog != null ? pkCatalog : db.getName();
+        String baseContainer = config.getSchema() != null ? config.getSchema() : config.getCatalog() != null ? config.getCatalog() : db.getName();
+
+        // partitions aren't tables of their own, so reference their table instead
+        if (baseContainer.equals(parentContainer)) {
+            String partitionOf = db.getPartitionParent(pkTableName);
+            if (partitionOf != null)
+                pkTableName = partitionOf;
+        }
+
+        Pattern include = config.getTableInclusions();
+        Pattern exclude = config.getTableExclusions();
 
         if (!include.matcher(pkTableName).matches() || exclude.matcher(pkTableName).matches()) {
             if (fineEnabled)
@@ -213,12 +303,8 @@ public class Table implements Comparable<Table> {
         if (childColumn != null) {
             foreignKey.addChildColumn(childColumn);
 
-            Config config = Config.getInstance();
             Table parentTable = tables.get(pkTableName);
 
-            String parentContainer = pkSchema != null ? pkSchema : pkCatalog != null ? pkCatalog : db.getName();
-            String baseContainer = config.getSchema() != null ? config.getSchema() : config.getCatalog() != null ? config.getCatalog() : db.getName();
-
             // if named table doesn't exist in this schema
             // or exists here but really referencing same named table in another schema
             if (parentTable == null || !baseContainer.equals(parentContainer)) {
@@ -252,7 +338,7 @@ public class Table implements Comparable<Table> {
      * @param meta
      * @throws SQLException
      */
-    private void initPrimaryKeys() throws SQLException {
+    void initPrimaryKeys() throws SQLException {
         ResultSet rs = null;
 
         try {
@@ -277,7 +363,7 @@ public class Table implements Comparable<Table> {
      * @param rs
      * @throws SQLException
      */
-    private void setPrimaryColumn(ResultSet rs) throws SQLException {
+    void setPrimaryColumn(ResultSet rs) throws SQLException {
         String pkName = rs.getString("PK_NAME");
         if (pkName == null)
             return;
@@ -300,46 +386,65 @@ public class Table implements Comparable<Table> {
     }
 
     /**
+     * Forget about any primary key columns that have been loaded
+     */
+    void clearPrimaryKeys() {
+        primaryKeys.clear();
+        for (TableIndex index : indexes.values())
+            index.setIsPrimaryKey(false);
+    }
+
+    /**
+     * Query the columns of this table.
+     * Note that {@link Database} normally bulk loads these for the whole schema
+     * and only falls back to this on a table-by-table basis.
+     *
      * @throws SQLException
      */
-    private void initColumns() throws SQLException {
+    void initColumns() throws SQLException {
         ResultSet rs = null;
 
-        synchronized (Table.class) {
-            try {
-                rs = db.getMetaData().getColumns(getCatalog(), getSchema(), getName(), "%");
+        // some drivers can't handle concurrent metadata queries
+        Lock lock = db.getMetaDataLock();
+        if (lock != null)
+            lock.lock();
 
-                while (rs.next())
-                    addColumn(rs);
-            } catch (SQLException exc) {
-                if (!isLogical()) {
-                    class ColumnInitializationFailure extends SQLException {
-                        private static final long serialVersionUID = 1L;
+        try {
+            rs = db.getMetaData().getColumns(getCatalog(), getSchema(), getName(), "%");
+            boolean hasAutoIncrement = hasAutoIncrement(rs);
 
-                        public ColumnInitializationFailure(SQLException failure) {
-                            super("Failed to collect column details for " + (isView() ? "view" : "table") + " '" + getName() + "' in schema '" + getContainer() + "'");
-                            initCause(failure);
-                        }
-                    }
+            while (rs.next())
+                addColumn(rs, hasAutoIncrement);
+        } catch (SQLException exc) {
+            if (!isLogical()) {
+                class ColumnInitializationFailure extends SQLException {
+                    private static final long serialVersionUID = 1L;
 
-                    throw new ColumnInitializationFailure(exc);
+                    public ColumnInitializationFailure(SQLException failure) {
+                        super("Failed to collect column details for " + (isView() ? "view" : "table") + " '" + getName() + "' in schema '" + getContainer() + "'");
+                        initCause(failure);
+                    }
                 }
-            } finally {
+
+                throw new ColumnInitializationFailure(exc);
+            }
+        } finally {
+            try {
                 if (rs != null)
                     rs.close();
+            } finally {
+                if (lock != null)
+                    lock.unlock();
             }
         }
-
-        initColumnAutoUpdate(false);
     }
 
     /**
      * @param forceQuotes
      * @throws SQLException
      */
-    private void initColumnAutoUpdate(boolean forceQuotes) throws SQLException {
-        ResultSet rs = null;
-        PreparedStatement stmt = null;
+    void initColumnAutoUpdate(boolean forceQuotes) throws SQLException {
+        MetadataQuery query = null;
 
         if (isView() || isRemote())
             return;
@@ -365,10 +470,9 @@ public class Table implements Comparable<Table> {
         sql.append(" where 0 = 1");
 
         try {
-            stmt = db.getMetaData().getConnection().prepareStatement(sql.toString());
-            rs = stmt.executeQuery();
+            query = db.getQueries().executeLiteral(sql.toString());
 
-            ResultSetMetaData rsMeta = rs.getMetaData();
+            ResultSetMetaData rsMeta = query.getResultSet().getMetaData();
             for (int i = rsMeta.getColumnCount(); i > 0; --i) {
                 TableColumn column = getColumn(rsMeta.getColumnName(i));
                 column.setIsAutoUpdated(rsMeta.isAutoIncrement(i));
@@ -384,10 +488,8 @@ public class Table implements Comparable<Table> {
                 initColumnAutoUpdate(true);
             }
         } finally {
-            if (rs != null)
-                rs.close();
-            if (stmt != null)
-                stmt.close();
+            if (query != null)
+                query.close();
         }
     }
 
@@ -408,6 +510,92 @@ public class Table implements Comparable<Table> {
         }
     }
 
+    /**
+     * Same as {@link #addColumn(ResultSet)} but also picks up the column's
+     * auto increment status from the JDBC 4 <code>IS_AUTOINCREMENT</code> column
+     * if <code>hasAutoIncrement</code>.
+     *
+     * @param rs ResultSet from {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * @param hasAutoIncrement value of {@link #hasAutoIncrement(ResultSet)} for <code>rs</code>
+     * @throws SQLException
+     */
+    void addColumn(ResultSet rs, boolean hasAutoIncrement) throws SQLException {
+        addColumn(rs);
+
+        TableColumn column = getColumn(rs.getString("COLUMN_NAME"));
+        if (column == null)
+            return;
+
+        // the spec says it's "YES", "NO" or "" if it can't be determined
+        String autoIncrement = hasAutoIncrement ? rs.getString("IS_AUTOINCREMENT") : null;
+        if ("YES".equalsIgnoreCase(autoIncrement))
+            column.setIsAutoUpdated(true);
+        else if ("NO".equalsIgnoreCase(autoIncrement))
+            column.setIsAutoUpdated(false);
+        else
+            autoUpdateUnresolved = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified result of
+     * {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * includes the JDBC 4 <code>IS_AUTOINCREMENT</code> column.
+     */
+    static boolean hasAutoIncrement(ResultSet rs) throws SQLException {
+        ResultSetMetaData rsMeta = rs.getMetaData();
+        for (int i = rsMeta.getColumnCount(); i > 0; --i) {
+            if ("IS_AUTOINCREMENT".equalsIgnoreCase(rsMeta.getColumnLabel(i)))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the auto increment status of all of the columns
+     * came along with the columns' metadata, so {@link #initColumnAutoUpdate(boolean)}
+     * doesn't need to query it.
+     */
+    boolean isAutoUpdateResolved() {
+        return !columns.isEmpty() && !autoUpdateUnresolved;
+    }
+
+    /**
+     * Flag the specified columns as auto updated and the rest as not.
+     *
+     * @param autoUpdated names of the auto updated columns (may be <code>null</code>)
+     */
+    void setAutoUpdatedColumns(Set<String> autoUpdated) {
+        for (TableColumn column : columns.values())
+            column.setIsAutoUpdated(autoUpdated != null && autoUpdated.contains(column.getName()));
+    }
+
+    /**
+     * Forget about any columns that have been loaded
+     */
+    void clearColumns() {
+        columns.clear();
+        autoUpdateUnresolved = false;
+    }
+
+    /**
+     * Add a column that was created elsewhere (e.g. by a {@link DatabaseSnapshot})
+     *
+     * @param column
+     */
+    void addColumn(TableColumn column) {
+        columns.put(column.getName(), column);
+    }
+
+    /**
+     * Add an index that was created elsewhere (e.g. by a {@link DatabaseSnapshot})
+     *
+     * @param index
+     */
+    void addIndex(TableIndex index) {
+        indexes.put(index.getName(), index);
+    }
+
     /**
      * Add a column that's defined in xml metadata.
      * Assumes that a column named colMeta.getName() doesn't already exist in <code>columns</code>.
@@ -427,7 +615,7 @@ public class Table implements Comparable<Table> {
      *
      * @throws SQLException
      */
-    private void initIndexes() throws SQLException {
+    void initIndexes() throws SQLException {
         if (isView() || isRemote())
             return;
 
@@ -465,41 +653,34 @@ public class Table implements Comparable<Table> {
         if (selectIndexesSql == null)
             return false;
 
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
+        MetadataQuery query = null;
 
         try {
-            stmt = db.prepareStatement(selectIndexesSql, getName());
-            rs = stmt.executeQuery();
+            query = db.getQueries().execute(selectIndexesSql, getName());
 
-            while (rs.next()) {
-                if (rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic)
-                    addIndex(rs);
+            while (query.next()) {
+                if (query.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic)
+                    addIndex(query.getResultSet());
             }
         } catch (SQLException sqlException) {
             logger.warning("Failed to query index information with SQL: " + selectIndexesSql);
             logger.warning(sqlException.toString());
             return false;
         } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (Exception exc) {
-                    exc.printStackTrace();
-                }
-            }
-            if (stmt != null)  {
-                try {
-                    stmt.close();
-                } catch (Exception exc) {
-                    exc.printStackTrace();
-                }
-            }
+            if (query != null)
+                query.close();
         }
 
         return true;
     }
 
+    /**
+     * Forget about any indexes that have been loaded
+     */
+    void clearIndexes() {
+        indexes.clear();
+    }
+
     /**
      * @param indexName
      * @return
@@ -512,7 +693,7 @@ public class Table implements Comparable<Table> {
      * @param rs
      * @throws SQLException
      */
-    private void addIndex(ResultSet rs) throws SQLException {
+    void addIndex(ResultSet rs) throws SQLException {
         String indexName = rs.getString("INDEX_NAME");
 
         if (indexName == null)
@@ -626,6 +807,15 @@ public class Table implements Comparable<Table> {
         return checkConstraints;
     }
 
+    /**
+     * Returns the partitions (or child tables) of this table, sorted by name
+     *
+     * @return
+     */
+    public Set<TablePartition> getPartitions() {
+        return Collections.unmodifiableSet(partitions);
+    }
+
     /**
      * Returns the indexes that are applied to this table
      *
@@ -974,6 +1164,15 @@ public class Table implements Comparable<Table> {
         return false;
     }
 
+    /**
+     * Returns <code>true</code> if only some of this table's details have been loaded
+     * (just the columns involved in relationships) and the rest will be loaded on demand.
+     * @return
+     */
+    public boolean isLightweight() {
+        return false;
+    }
+
     /**
      * If this is a view it returns the SQL used to create the view (if it's available).
      * <code>null</code> if it's not a view or the SQL isn't available.
@@ -1004,7 +1203,37 @@ public class Table implements Comparable<Table> {
      * @param numRows
      */
     public void setNumRows(long numRows) {
+        setNumRows(numRows, false);
+    }
+
+    /**
+     * Explicitly set the number of rows in this table
+     *
+     * @param numRows
+     * @param approximate <code>true</code> if <code>numRows</code> is an estimate
+     *          (e.g. from the database's statistics) rather than an actual count
+     */
+    public void setNumRows(long numRows, boolean approximate) {
         this.numRows = numRows;
+        this.numRowsApproximate = approximate;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link #getNumRows()} is an estimate
+     * rather than an actual count of the table's rows.
+     *
+     * @return
+     */
+    public boolean isNumRowsApproximate() {
+        return numRowsApproximate;
+    }
+
+    /**
+     * Returns <code>true</code> if the number of rows has already been determined
+     * (or explicitly set), so {@link #getNumRows()} won't have to query the database.
+     */
+    boolean isNumRowsResolved() {
+        return numRows != null;
     }
 
     /**
@@ -1021,41 +1250,42 @@ public class Table implements Comparable<Table> {
             return -1;
 
         SQLException originalFailure = null;
+        long started = System.currentTimeMillis();
 
         String sql = Config.getInstance().getDbProperties().getProperty("selectRowCountSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+            MetadataQuery query = null;
 
             try {
-                stmt = db.prepareStatement(sql, getName());
-                rs = stmt.executeQuery();
+                query = db.getQueries().execute(sql, getName(), getRowCountTimeout());
 
-                while (rs.next()) {
-                    return rs.getLong("row_count");
+                while (query.next()) {
+                    return query.getLong("row_count");
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 originalFailure = sqlException;
             } finally {
-                if (rs != null) {
-                    try {
-                        rs.close();
-                    } catch (SQLException exc) {}
-                }
-                if (stmt != null) {
-                    try {
-                        stmt.close();
-                    } catch (SQLException exc) {}
-                }
+                if (query != null)
+                    query.close();
             }
         }
 
+        if (originalFailure != null && isRowCountTimedOut(started)) {
+            logger.warning("Gave up counting the rows of table " + getName() + " after " + getRowCountTimeout() + " seconds, using '-1'");
+            return -1;
+        }
+
         // if we get here then we either didn't have custom SQL or it didn't work
         try {
             // '*' should work best for the majority of cases
             return fetchNumRows("count(*)", false);
         } catch (SQLException try2Exception) {
+            if (isRowCountTimedOut(started)) {
+                logger.warning("Gave up counting the rows of table " + getName() + " after " + getRowCountTimeout() + " seconds, using '-1'");
+                return -1;
+            }
+
             try {
                 // except nested tables...try using '1' instead
                 return fetchNumRows("count(1)", false);
@@ -1074,47 +1304,78 @@ public class Table implements Comparable<Table> {
     }
 
     protected long fetchNumRows(String clause, boolean forceQuotes) throws SQLException {
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
+        MetadataQuery query = null;
         StringBuilder sql = new StringBuilder("select ");
         sql.append(clause);
         sql.append(" from ");
-        if (getSchema(true) != null) {
-            sql.append(getSchema(true));
-            sql.append('.');
-        } else if (getCatalog() != null) {
-            sql.append(getCatalog());
-            sql.append('.');
-        }
+        sql.append(getQualifiedName(forceQuotes));
 
-        if (forceQuotes) {
-            String quote = db.getMetaData().getIdentifierQuoteString().trim();
-            sql.append(quote + getName() + quote);
-        } else
-            sql.append(db.getQuotedIdentifier(getName()));
+        long started = System.currentTimeMillis();
 
         try {
-            if (finerEnabled)
-                logger.finer(sql.toString());
-            stmt = db.getConnection().prepareStatement(sql.toString());
-            rs = stmt.executeQuery();
-            while (rs.next()) {
-                return rs.getLong(1);
+            query = db.getQueries().executeLiteral(sql.toString(), getRowCountTimeout());
+            while (query.next()) {
+                return query.getLong(1);
             }
             return -1;
         } catch (SQLException exc) {
             if (forceQuotes) // we tried with and w/o quotes...fail this attempt
                 throw exc;
+            if (isRowCountTimedOut(started)) // the query was fine, the table's just too big
+                throw exc;
 
             return fetchNumRows(clause, true);
         } finally {
-            if (rs != null)
-                rs.close();
-            if (stmt != null)
-                stmt.close();
+            if (query != null)
+                query.close();
         }
     }
 
+    /**
+     * Returns the name of the table qualified by its schema (or catalog)
+     * in a form that can be used in SQL.
+     *
+     * @param forceQuotes <code>true</code> if the table's name should always be quoted,
+     *          otherwise it's only quoted if it has to be
+     * @throws SQLException
+     */
+    String getQualifiedName(boolean forceQuotes) throws SQLException {
+        StringBuilder name = new StringBuilder();
+        if (getSchema(true) != null) {
+            name.append(getSchema(true));
+            name.append('.');
+        } else if (getCatalog() != null) {
+            name.append(getCatalog());
+            name.append('.');
+        }
+
+        if (forceQuotes) {
+            String quote = db.getMetaData().getIdentifierQuoteString().trim();
+            name.append(quote + getName() + quote);
+        } else
+            name.append(db.getQuotedIdentifier(getName()));
+
+        return name.toString();
+    }
+
+    /**
+     * Number of seconds that a single row count query is allowed to take,
+     * or <code>0</code> if it's not limited.
+     */
+    private int getRowCountTimeout() {
+        return Config.getInstance().getRowCountTimeout();
+    }
+
+    /**
+     * Returns <code>true</code> if a row count that started at <code>started</code>
+     * has run out of time, meaning that its failure was (most likely) a timeout
+     * that retrying with different SQL won't fix.
+     */
+    private boolean isRowCountTimedOut(long started) {
+        int timeout = getRowCountTimeout();
+        return timeout > 0 && System.currentTimeMillis() - started >= timeout * 1000L;
+    }
+
     /**
      * Update the table with the specified XML-derived metadata
      *
@@ -0,0 +1,62 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+/**
+ * A partition (or child table) of a {@link Table}, as returned by the
+ * <code>selectPartitionsSql</code> in the .properties.<p/>
+ *
+ * Partitions aren't loaded as tables of their own since they're
+ * (typically) identical to the table that they're a part of.
+ */
+public class TablePartition implements Comparable<TablePartition> {
+    private final String name;
+    private final String bound;
+
+    /**
+     * @param name
+     * @param bound description of the values that the partition holds,
+     *          <code>null</code> if unknown
+     */
+    public TablePartition(String name, String bound) {
+        this.name = name;
+        this.bound = bound;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return description of the values that the partition holds,
+     *          <code>null</code> if unknown
+     */
+    public String getBound() {
+        return bound;
+    }
+
+    public int compareTo(TablePartition other) {
+        return name.compareToIgnoreCase(other.name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
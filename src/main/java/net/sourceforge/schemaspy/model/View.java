@@ -18,8 +18,6 @@
  */
 package net.sourceforge.schemaspy.model;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import net.sourceforge.schemaspy.Config;
 
@@ -41,9 +39,25 @@ public class View extends Table {
      */
     public View(Database db, String catalog, String schema,
                 String name, String remarks, String viewSql) throws SQLException {
-        super(db, catalog, schema, name, remarks);
+        this(db, catalog, schema, name, remarks, viewSql, true);
+    }
+
+    /**
+     * @param db
+     * @param catalog
+     * @param schema
+     * @param name
+     * @param remarks
+     * @param viewSql
+     * @param initDetails <code>false</code> if the caller is responsible for
+     *          initializing columns and providing the view's SQL
+     * @throws SQLException
+     */
+    View(Database db, String catalog, String schema,
+                String name, String remarks, String viewSql, boolean initDetails) throws SQLException {
+        super(db, catalog, schema, name, remarks, initDetails);
 
-        if (viewSql == null)
+        if (viewSql == null && initDetails)
             viewSql = fetchViewSql();
 
         if (viewSql != null && viewSql.trim().length() > 0)
@@ -74,28 +88,22 @@ public class View extends Table {
         if (selectViewSql == null)
             return null;
 
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
+        MetadataQuery query = null;
 
         try {
-            stmt = db.prepareStatement(selectViewSql, getName());
-            rs = stmt.executeQuery();
-            while (rs.next()) {
-                try {
-                    return rs.getString("view_definition");
-                } catch (SQLException tryOldName) {
-                    return rs.getString("text");
-                }
+            query = db.getQueries().execute(selectViewSql, getName());
+            while (query.next()) {
+                if (query.hasColumn("view_definition"))
+                    return query.getString("view_definition");
+                return query.getString("text");
             }
             return null;
         } catch (SQLException sqlException) {
             System.err.println(selectViewSql);
             throw sqlException;
         } finally {
-            if (rs != null)
-                rs.close();
-            if (stmt != null)
-                stmt.close();
+            if (query != null)
+                query.close();
         }
     }
 }
@@ -0,0 +1,344 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.model.xml.SchemaMeta;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Rebuilds a {@link Database} from the XML that
+ * {@link net.sourceforge.schemaspy.view.XmlTableFormatter} wrote on a previous run,
+ * so the output can be generated without a connection to the database.<p/>
+ *
+ * The XML is streamed rather than loaded into a DOM since it can be huge.<p/>
+ *
+ * Some things aren't in the XML, so they can't be rebuilt:
+ * <ul>
+ * <li>routines and partitions
+ * <li>the update rules of foreign keys and any delete rules other than cascade
+ *      (they're treated as 'no action')
+ * <li>the details of remote tables beyond the columns that are referenced
+ * </ul>
+ * Implied relationships are in the XML, but they're ignored here
+ * and derived again (if enabled) just like they would be from a database.
+ */
+public class XmlDatabaseReader {
+    private final Config config;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    public XmlDatabaseReader(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Read the database that's described by the specified XML.
+     * Any <code>-meta</code> is applied to it just like it would be to a
+     * database that was read from a connection.
+     *
+     * @param xmlFile
+     * @return
+     * @throws InvalidConfigurationException if the XML couldn't be read
+     * @throws SQLException
+     */
+    public Database read(File xmlFile) throws InvalidConfigurationException, SQLException {
+        if (!xmlFile.isFile())
+            throw new InvalidConfigurationException("Specified XML file \"" + xmlFile + "\" does not exist");
+
+        Handler handler = new Handler();
+
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(xmlFile, handler);
+        } catch (ParserConfigurationException exc) {
+            throw new InvalidConfigurationException("Invalid XML parser configuration", exc);
+        } catch (SAXException exc) {
+            if (exc.getException() instanceof SQLException)
+                throw (SQLException)exc.getException();
+            throw new InvalidConfigurationException("Failed to parse " + xmlFile, exc);
+        } catch (IOException exc) {
+            throw new InvalidConfigurationException("Could not read " + xmlFile + ":", exc);
+        }
+
+        Database db = handler.db;
+        if (db == null)
+            throw new InvalidConfigurationException(xmlFile + " doesn't describe a database");
+
+        connect(db, handler.foreignKeys);
+
+        logger.info("Read " + db.getTables().size() + " tables, " + db.getViews().size() + " views and " +
+                    db.getRemoteTables().size() + " remote tables from " + xmlFile);
+
+        if (config.getMeta() != null)
+            db.updateFromXmlMetadata(new SchemaMeta(config.getMeta(), db.getName(), db.getSchema()));
+
+        return db;
+    }
+
+    /**
+     * Connect the foreign keys now that all of the tables that they refer to exist
+     *
+     * @param db
+     * @param foreignKeys
+     * @throws SQLException
+     */
+    private void connect(Database db, List<ForeignKeyRecord> foreignKeys) throws SQLException {
+        for (ForeignKeyRecord foreignKey : foreignKeys) {
+            Table table = db.getLocals().get(foreignKey.tableName);
+            TableColumn column = table.getColumn(foreignKey.columnName);
+            Table other = getTable(db, table, foreignKey.otherCatalog, foreignKey.otherSchema, foreignKey.otherTableName);
+            TableColumn otherColumn = getColumn(other, foreignKey.otherColumnName);
+            if (otherColumn == null) {
+                logger.warning("Couldn't add FK '" + foreignKey.name + "' to table '" + table +
+                                "' - Column '" + foreignKey.otherColumnName + "' doesn't exist in table '" + other + "'");
+                continue;
+            }
+
+            int updateRule = DatabaseMetaData.importedKeyNoAction;
+            int deleteRule = foreignKey.cascadeOnDelete ? DatabaseMetaData.importedKeyCascade : DatabaseMetaData.importedKeyNoAction;
+
+            if (foreignKey.isParent) {
+                table.addForeignKey(foreignKey.name, column, otherColumn, updateRule, deleteRule);
+            } else if (other.isRemote()) {
+                // relationships between local tables are described by both sides,
+                // so children are only used for those that only exist on this side
+                other.addForeignKey(foreignKey.name, otherColumn, column, updateRule, deleteRule);
+            }
+        }
+    }
+
+    /**
+     * Returns the specified table, which is a remote table (that's created on demand)
+     * unless it's in the same place as <code>local</code>.
+     */
+    private Table getTable(Database db, Table local, String catalog, String schema, String name) throws SQLException {
+        Table table = db.getLocals().get(name);
+        if (table != null && same(table.getCatalog(), catalog) && same(table.getSchema(), schema))
+            return table;
+
+        table = db.getRemoteTable(catalog, schema, name);
+        if (table == null) {
+            String baseContainer = local.getSchema() != null ? local.getSchema() : local.getCatalog() != null ? local.getCatalog() : db.getName();
+            RemoteTable remoteTable = new RemoteTable(db, catalog, schema, name, baseContainer, true);
+            remoteTable.setDetailsLoaded();   // there's nothing more to be had
+            db.addRemoteTable(remoteTable);
+            table = remoteTable;
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the named column of the table.  Only the referenced columns of
+     * remote tables are known, so they're added as they're referenced.
+     */
+    private TableColumn getColumn(Table table, String name) {
+        TableColumn column = table.getColumn(name);
+        if (column == null && table.isRemote()) {
+            column = new TableColumn(table, name, null, null, 0, 0, true, false, null, null);
+            table.addColumn(column);
+        }
+
+        return column;
+    }
+
+    private static boolean same(String first, String second) {
+        return first == null ? second == null : first.equalsIgnoreCase(second);
+    }
+
+    /**
+     * Builds the tables as the XML is streamed through it
+     */
+    private class Handler extends DefaultHandler {
+        private Database db;
+        private Table table;
+        private TableColumn column;
+        private TableIndex index;
+        private final List<ForeignKeyRecord> foreignKeys = new ArrayList<ForeignKeyRecord>();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            try {
+                if (qName.equals("database")) {
+                    db = new Database(config, attributes.getValue("name"), config.getCatalog(),
+                                        attributes.getValue("schema"), attributes.getValue("type"));
+                } else if (db == null) {
+                    throw new SAXException("Expected <database> but found <" + qName + ">");
+                } else if (qName.equals("table")) {
+                    startTable(attributes);
+                } else if (table == null) {
+                    return;
+                } else if (qName.equals("column")) {
+                    if (index == null) {
+                        column = new TableColumn(table, attributes.getValue("name"), getId(attributes.getValue("id")),
+                                                    attributes.getValue("type"),
+                                                    getInt(attributes.getValue("size")), getInt(attributes.getValue("digits")),
+                                                    Boolean.valueOf(attributes.getValue("nullable")).booleanValue(),
+                                                    Boolean.valueOf(attributes.getValue("autoUpdated")).booleanValue(),
+                                                    getDefaultValue(attributes), attributes.getValue("remarks"));
+                        table.addColumn(column);
+                    } else {
+                        TableColumn indexColumn = table.getColumn(attributes.getValue("name"));
+                        if (indexColumn != null)
+                            index.addColumn(indexColumn, Boolean.valueOf(attributes.getValue("ascending")).booleanValue() ? "A" : "D");
+                    }
+                } else if (qName.equals("parent") || qName.equals("child")) {
+                    if (column != null && !Boolean.valueOf(attributes.getValue("implied")).booleanValue())
+                        foreignKeys.add(new ForeignKeyRecord(table, column, qName.equals("parent"), attributes));
+                } else if (qName.equals("primaryKey")) {
+                    TableColumn primaryColumn = table.getColumn(attributes.getValue("column"));
+                    if (primaryColumn != null)
+                        table.setPrimaryColumn(primaryColumn);
+                } else if (qName.equals("index")) {
+                    index = new TableIndex(attributes.getValue("name"), Boolean.valueOf(attributes.getValue("unique")).booleanValue());
+                    index.setId(getId(attributes.getValue("id")));
+                    table.addIndex(index);
+                } else if (qName.equals("checkConstraint")) {
+                    table.addCheckConstraint(attributes.getValue("name"), attributes.getValue("constraint"));
+                }
+            } catch (SQLException exc) {
+                throw new SAXException(exc);
+            }
+        }
+
+        private void startTable(Attributes attributes) throws SQLException {
+            String catalog = attributes.getValue("catalog");
+            String schema = attributes.getValue("schema");
+            String name = attributes.getValue("name");
+            String remarks = attributes.getValue("remarks");
+
+            if ("VIEW".equals(attributes.getValue("type"))) {
+                View view = new View(db, catalog, schema, name, remarks, attributes.getValue("viewSql"), false);
+                db.addView(view);
+                table = view;
+            } else {
+                table = new Table(db, catalog, schema, name, remarks, false);
+                db.addTable(table);
+            }
+
+            table.setId(getId(attributes.getValue("id")));
+
+            // they weren't counted (or couldn't be) if they're not there
+            String numRows = attributes.getValue("numRows");
+            if (numRows != null)
+                table.setNumRows(Long.parseLong(numRows), Boolean.valueOf(attributes.getValue("numRowsApproximate")).booleanValue());
+            else
+                table.setNumRows(-1);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (qName.equals("table")) {
+                // the XML doesn't say which index is the primary key,
+                // so it's the unique one that's made up of the primary key's columns
+                List<TableColumn> primaryColumns = table.getPrimaryColumns();
+                if (!primaryColumns.isEmpty()) {
+                    for (TableIndex tableIndex : table.getIndexes()) {
+                        if (tableIndex.isUnique() && tableIndex.getColumns().equals(primaryColumns)) {
+                            tableIndex.setIsPrimaryKey(true);
+                            break;
+                        }
+                    }
+                }
+                table = null;
+            } else if (qName.equals("column")) {
+                if (index == null)
+                    column = null;
+            } else if (qName.equals("index")) {
+                index = null;
+            }
+        }
+
+        private Object getDefaultValue(Attributes attributes) {
+            String defaultValue = attributes.getValue("defaultValue");
+            if (defaultValue != null && Boolean.valueOf(attributes.getValue("defaultValueIsBinary")).booleanValue()) {
+                // it was written as hex
+                byte[] bytes = new byte[defaultValue.length() / 2];
+                for (int i = 0; i < bytes.length; ++i)
+                    bytes[i] = (byte)Integer.parseInt(defaultValue.substring(i * 2, i * 2 + 2), 16);
+                defaultValue = new String(bytes);
+            }
+
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Ids are written as strings, so turn the numeric ones back into numbers
+     */
+    private static Object getId(String id) {
+        if (id == null || id.equals("null"))
+            return null;
+
+        try {
+            return Integer.valueOf(id);
+        } catch (NumberFormatException notAnInt) {
+            try {
+                return Long.valueOf(id);
+            } catch (NumberFormatException notNumeric) {
+                return id;
+            }
+        }
+    }
+
+    private static int getInt(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException badValue) {
+            return 0;
+        }
+    }
+
+    /**
+     * One column of a foreign key as described by one side of the relationship
+     */
+    private static class ForeignKeyRecord {
+        private final String tableName;
+        private final String columnName;
+        private final boolean isParent;     // true if 'other' is the parent of 'table'
+        private final String name;
+        private final String otherCatalog;
+        private final String otherSchema;
+        private final String otherTableName;
+        private final String otherColumnName;
+        private final boolean cascadeOnDelete;
+
+        ForeignKeyRecord(Table table, TableColumn column, boolean isParent, Attributes attributes) {
+            tableName = table.getName();
+            columnName = column.getName();
+            this.isParent = isParent;
+            name = attributes.getValue("foreignKey");
+            otherCatalog = attributes.getValue("catalog");
+            otherSchema = attributes.getValue("schema");
+            otherTableName = attributes.getValue("table");
+            otherColumnName = attributes.getValue("column");
+            cascadeOnDelete = Boolean.valueOf(attributes.getValue("onDeleteCascade")).booleanValue();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+/**
+ * Limits the number of database queries that are in flight at once.<p/>
+ *
+ * In fixed mode the limit is simply the maximum that it was created with.
+ * In adaptive mode the limit follows an AIMD (additive increase,
+ * multiplicative decrease) scheme: it grows while queries complete
+ * in a reasonable amount of time and gets cut back when they fail or
+ * take much longer than they have been taking.  It never exceeds the maximum.<p/>
+ *
+ * Latency is judged per query rather than per unit of work, otherwise
+ * work that runs more (or bigger) queries would look like congestion.
+ */
+public class ConcurrencyLimiter {
+    private static final double BACKOFF = 0.7;          // multiplicative decrease
+    private static final double LATENCY_TOLERANCE = 2.5; // slowdown that's considered congestion
+    private static final double SMOOTHING = 0.1;        // weight of each new latency sample
+    private static final int WARMUP_SAMPLES = 5;        // samples before latency is judged
+
+    private final int max;
+    private final boolean adaptive;
+    private double limit;
+    private boolean slowStart;
+    private int inFlight;
+    private double avgLatency;
+    private int numSamples;
+    private long lastDecrease;
+    private int lowest;
+    private int highest;
+
+    /**
+     * @param max maximum number of queries to have in flight at once
+     * @param adaptive <code>true</code> if the limit should adapt to how
+     *          the database is coping, otherwise it's fixed at <code>max</code>
+     */
+    public ConcurrencyLimiter(int max, boolean adaptive) {
+        this.max = Math.max(max, 1);
+        this.adaptive = adaptive;
+        if (adaptive) {
+            limit = 1;
+            slowStart = true;   // grow quickly until we see the first sign of trouble
+        } else {
+            limit = this.max;
+        }
+        lowest = highest = (int)limit;
+        lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * Wait until another query is allowed to start.
+     *
+     * @return the time that the query was allowed to start,
+     *          which must be passed to {@link #release(long, long, boolean)}
+     * @throws InterruptedException
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (inFlight >= (int)limit)
+            wait();
+
+        ++inFlight;
+        return System.nanoTime();
+    }
+
+    /**
+     * Signal that a query has completed and let the limit adapt
+     * to how it went.
+     *
+     * @param started value returned from {@link #acquire()}
+     * @param latency how long (in nanoseconds) the queries that were run took to execute on average,
+     *          or <code>-1</code> if that isn't comparable from one query to the next
+     *          (e.g. counting rows), in which case only failures are considered congestion
+     * @param failed <code>true</code> if the query failed
+     */
+    public synchronized void release(long started, long latency, boolean failed) {
+        --inFlight;
+
+        if (adaptive) {
+            adapt(started, latency, failed);
+            lowest = Math.min(lowest, (int)limit);
+            highest = Math.max(highest, (int)limit);
+        }
+
+        notifyAll();
+    }
+
+    private void adapt(long started, long latency, boolean failed) {
+        boolean sampled = latency >= 0;
+        boolean congested = failed ||
+            (sampled && numSamples >= WARMUP_SAMPLES && latency > avgLatency * LATENCY_TOLERANCE);
+
+        if (!failed && sampled) {
+            avgLatency = numSamples == 0 ? latency : avgLatency + (latency - avgLatency) * SMOOTHING;
+            ++numSamples;
+        }
+
+        if (congested) {
+            // queries that started before we last backed off were slowed down by the
+            // same congestion, so don't keep penalizing ourselves for them
+            if (started - lastDecrease > 0) {
+                limit = Math.max(1, limit * BACKOFF);
+                lastDecrease = System.nanoTime();
+                slowStart = false;
+            }
+        } else if (slowStart) {
+            limit = Math.min(max, limit + 1);   // doubles with every 'round' of queries
+        } else {
+            limit = Math.min(max, limit + 1 / limit); // one more per 'round' of queries
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the limit adapts to how the database is coping
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @return the maximum number of queries allowed in flight at once
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the current number of queries allowed in flight at once
+     */
+    public synchronized int getLimit() {
+        return (int)limit;
+    }
+
+    /**
+     * @return a description of where the limit has been and where it settled
+     */
+    @Override
+    public synchronized String toString() {
+        if (!adaptive)
+            return "fixed at " + max;
+        return getLimit() + " (ranged from " + lowest + " to " + highest + " with a maximum of " + max + ")";
+    }
+}
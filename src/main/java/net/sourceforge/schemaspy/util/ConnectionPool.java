@@ -0,0 +1,168 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A minimal pool of JDBC {@link Connection}s that lets each worker thread
+ * query metadata on its own connection rather than serializing on a single
+ * shared one.<p/>
+ *
+ * Connections are created on demand from the same {@link Driver}, URL and
+ * properties that were used to create the primary connection, up to a
+ * maximum of <code>maxConnections</code> in addition to the primary.
+ * If the database refuses to give us another connection then the pool
+ * degrades to handing out the primary connection, which is what we did
+ * before pooling existed.
+ */
+public class ConnectionPool {
+    private final Driver driver;
+    private final String connectionURL;
+    private final Properties connectionProperties;
+    private final Connection primary;
+    private final int maxConnections;
+    private final List<Connection> opened = new ArrayList<Connection>();
+    private final LinkedList<Connection> idle = new LinkedList<Connection>();
+    private boolean degraded;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param driver driver used to create <code>primary</code>
+     * @param connectionURL URL used to create <code>primary</code>
+     * @param connectionProperties properties (including credentials) used to create <code>primary</code>
+     * @param primary the connection that's already been established
+     * @param maxConnections maximum number of connections to open in addition to <code>primary</code>
+     */
+    public ConnectionPool(Driver driver, String connectionURL, Properties connectionProperties, Connection primary, int maxConnections) {
+        this.driver = driver;
+        this.connectionURL = connectionURL;
+        this.connectionProperties = connectionProperties;
+        this.primary = primary;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return the connection that the pool was created with
+     */
+    public Connection getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Returns a connection for the exclusive use of the caller until it's
+     * {@link #release(Connection) released}, waiting for one to be released
+     * if the maximum number are already in use.<p/>
+     *
+     * Returns the (shared) primary connection if the pool isn't allowed to open any connections
+     * or if the database wouldn't give us any.
+     *
+     * @throws SQLException if the caller was interrupted while waiting for a connection
+     */
+    public synchronized Connection acquire() throws SQLException {
+        while (true) {
+            if (!idle.isEmpty())
+                return idle.removeFirst();
+
+            if (degraded || maxConnections < 1)
+                return primary;
+
+            if (opened.size() < maxConnections) {
+                Connection connection = connect();
+                if (connection != null) {
+                    opened.add(connection);
+                    return connection;
+                }
+            } else {
+                try {
+                    wait();
+                } catch (InterruptedException interrupted) {
+                    // the primary is being used by others, so don't hand it out instead
+                    Thread.currentThread().interrupt();
+                    SQLException exc = new SQLException("Interrupted while waiting for a connection");
+                    exc.initCause(interrupted);
+                    throw exc;
+                }
+            }
+        }
+    }
+
+    /**
+     * Make the specified connection available to other callers of {@link #acquire()}.
+     *
+     * @param connection
+     */
+    public synchronized void release(Connection connection) {
+        if (connection != null && connection != primary) {
+            idle.addFirst(connection);
+            notify();
+        }
+    }
+
+    /**
+     * @return number of connections that have been opened in addition to the primary
+     */
+    public synchronized int getNumOpened() {
+        return opened.size();
+    }
+
+    /**
+     * Close all of the connections created by the pool.
+     * The primary connection is left open since the pool didn't create it.
+     */
+    public synchronized void close() {
+        for (Connection connection : opened) {
+            try {
+                connection.close();
+            } catch (SQLException ignore) {}
+        }
+
+        opened.clear();
+        idle.clear();
+    }
+
+    /**
+     * Create another connection.  Returns <code>null</code> (and degrades the pool)
+     * if that fails for any reason.
+     */
+    private Connection connect() {
+        Connection connection = null;
+
+        try {
+            connection = driver.connect(connectionURL, connectionProperties);
+        } catch (SQLException exc) {
+            logger.warning("Failed to open additional connection: " + exc);
+        }
+
+        if (connection == null) {
+            logger.warning("Sharing the primary connection after opening " + opened.size() + " of " + maxConnections + " additional connections");
+            degraded = true;
+            notifyAll();
+        }
+
+        return connection;
+    }
+}
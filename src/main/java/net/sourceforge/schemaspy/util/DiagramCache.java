@@ -0,0 +1,286 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the diagrams (bitmap, vector and image map) that {@link Dot} renders
+ * so that identical <code>.dot</code> files don't have to be rendered again.<p/>
+ *
+ * Diagrams are keyed by a hash of the <code>.dot</code> file's contents and
+ * the details of how it's rendered (the version of dot, formats and renderers).
+ * When the cache exceeds its maximum size the least recently used diagrams are removed.<p/>
+ *
+ * Each diagram is made up of three files in the cache's directory:
+ * <code>[key].bitmap</code>, <code>[key].vector</code> and <code>[key].map</code>.
+ * The map is written last, so a diagram is only used if its map exists.
+ * That (along with writing through temporary files) lets multiple processes
+ * share a cache.
+ */
+public class DiagramCache {
+    private static final String BITMAP = ".bitmap";
+    private static final String VECTOR = ".vector";
+    private static final String MAP = ".map";
+    private static final long ORPHAN_AGE = 60 * 60 * 1000L; // incomplete diagrams older than this are removed
+
+    private final File dir;
+    private final long maxBytes;
+    private final Map<String, Long> sizes = new LinkedHashMap<String, Long>(16, 0.75f, true); // least recently used first
+    private long totalBytes;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+
+    /**
+     * @param dir directory that contains the cached diagrams
+     * @param maxBytes maximum number of bytes that the cached diagrams can use
+     * @throws IOException
+     */
+    public DiagramCache(File dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Failed to create directory '" + dir + "'");
+
+        scan();
+        evict();
+    }
+
+    /**
+     * Returns the key of the diagram that would be rendered from the specified <code>.dot</code> file
+     *
+     * @param dotFile
+     * @param renderDetails everything else that affects what's rendered
+     * @return
+     * @throws IOException
+     */
+    public String getKey(File dotFile, String renderDetails) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(renderDetails.getBytes("UTF-8"));
+
+            InputStream in = new FileInputStream(dotFile);
+            try {
+                byte[] buf = new byte[8192];
+                int numBytes;
+                while ((numBytes = in.read(buf)) != -1)
+                    digest.update(buf, 0, numBytes);
+            } finally {
+                in.close();
+            }
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest())
+                key.append(String.format("%02x", b));
+            return key.toString();
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException(exc);    // SHA-1 is required by the JRE
+        }
+    }
+
+    /**
+     * Copy the cached diagram (if any) to the specified files
+     *
+     * @param key
+     * @param bitmapFile
+     * @param vectorFile
+     * @return the diagram's image map or <code>null</code> if it isn't cached
+     */
+    public synchronized String get(String key, File bitmapFile, File vectorFile) {
+        File mapFile = new File(dir, key + MAP);
+        if (mapFile.isFile()) {
+            try {
+                copy(new File(dir, key + BITMAP), bitmapFile);
+                copy(new File(dir, key + VECTOR), vectorFile);
+                String map = new String(read(mapFile), "UTF-8");
+
+                mapFile.setLastModified(System.currentTimeMillis());
+                sizes.get(key);     // it's now the most recently used
+                return map;
+            } catch (IOException exc) {
+                // another process could have removed it
+                logger.fine("Failed to use cached diagram " + key + ": " + exc);
+                bitmapFile.delete();
+                vectorFile.delete();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Add a diagram that was just rendered to the cache.
+     * Failures aren't fatal...the diagram just won't be cached.
+     *
+     * @param key
+     * @param bitmapFile
+     * @param vectorFile
+     * @param map
+     */
+    public synchronized void put(String key, File bitmapFile, File vectorFile, String map) {
+        try {
+            String unique = "." + System.currentTimeMillis() + "." + System.identityHashCode(this) + ".tmp";
+            File mapTmp = new File(dir, key + MAP + unique);
+            OutputStream out = new FileOutputStream(mapTmp);
+            try {
+                out.write(map.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+
+            File bitmapTmp = new File(dir, key + BITMAP + unique);
+            copy(bitmapFile, bitmapTmp);
+            File vectorTmp = new File(dir, key + VECTOR + unique);
+            copy(vectorFile, vectorTmp);
+
+            // the map goes last since it's what says that the diagram is complete
+            rename(bitmapTmp, new File(dir, key + BITMAP));
+            rename(vectorTmp, new File(dir, key + VECTOR));
+            rename(mapTmp, new File(dir, key + MAP));
+        } catch (IOException exc) {
+            logger.warning("Failed to cache diagram of " + bitmapFile + ": " + exc);
+            remove(key);
+            return;
+        }
+
+        Long previous = sizes.put(key, Long.valueOf(getSize(key)));
+        if (previous != null)
+            totalBytes -= previous.longValue();
+        totalBytes += sizes.get(key).longValue();
+
+        evict();
+    }
+
+    /**
+     * Determine what's already in the cache (oldest first)
+     */
+    private void scan() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                long modified1 = file1.lastModified();
+                long modified2 = file2.lastModified();
+                return modified1 < modified2 ? -1 : modified1 == modified2 ? 0 : 1;
+            }
+        });
+
+        long orphanedBefore = System.currentTimeMillis() - ORPHAN_AGE;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(MAP)) {
+                String key = name.substring(0, name.length() - MAP.length());
+                long size = getSize(key);
+                sizes.put(key, Long.valueOf(size));
+                totalBytes += size;
+            } else if (file.lastModified() < orphanedBefore) {
+                // left behind by a failure
+                int dot = name.indexOf('.');
+                if (dot == -1 || name.endsWith(".tmp") || !new File(dir, name.substring(0, dot) + MAP).exists())
+                    file.delete();
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently used diagrams until the cache fits in its maximum size
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iter = sizes.entrySet().iterator();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Long> entry = iter.next();
+            iter.remove();
+            totalBytes -= entry.getValue().longValue();
+            remove(entry.getKey());
+            if (fineEnabled)
+                logger.fine("Removed diagram " + entry.getKey() + " from the render cache");
+        }
+    }
+
+    private void remove(String key) {
+        // map first so it's no longer considered complete
+        new File(dir, key + MAP).delete();
+        new File(dir, key + BITMAP).delete();
+        new File(dir, key + VECTOR).delete();
+    }
+
+    private long getSize(String key) {
+        return new File(dir, key + BITMAP).length() +
+                new File(dir, key + VECTOR).length() +
+                new File(dir, key + MAP).length();
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        to.delete();
+        if (!from.renameTo(to)) {
+            from.delete();
+            throw new IOException("Failed to rename " + from + " to " + to);
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buf = new byte[8192];
+                int numBytes;
+                while ((numBytes = in.read(buf)) != -1)
+                    out.write(buf, 0, numBytes);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int)file.length());
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[8192];
+            int numBytes;
+            while ((numBytes = in.read(buf)) != -1)
+                bytes.write(buf, 0, numBytes);
+        } finally {
+            in.close();
+        }
+
+        return bytes.toByteArray();
+    }
+}
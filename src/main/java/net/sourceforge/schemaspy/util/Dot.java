@@ -44,6 +44,8 @@ public class Dot {
     private String renderer;
     private final Set<String> validatedRenderers = Collections.synchronizedSet(new HashSet<String>());
     private final Set<String> invalidatedRenderers = Collections.synchronizedSet(new HashSet<String>());
+    private DiagramCache cache;
+    private boolean cacheInitialized;
     private final Logger logger = Logger.getLogger(Dot.class.getName());
 
     private Dot() {
@@ -279,10 +281,49 @@ public class Dot {
         return dotExe;
     }
 
+    /**
+     * Returns the cache of rendered diagrams or <code>null</code> if they're not to be cached
+     */
+    private synchronized DiagramCache getCache() {
+        if (!cacheInitialized) {
+            cacheInitialized = true;
+
+            Config config = Config.getInstance();
+            if (config.getRenderCacheDir() != null) {
+                try {
+                    cache = new DiagramCache(config.getRenderCacheDir(), config.getRenderCacheSize() * 1024L * 1024L);
+                } catch (IOException exc) {
+                    logger.warning("Diagrams won't be cached: " + exc);
+                }
+            }
+        }
+
+        return cache;
+    }
+
     /**
      * Using the specified .dot file generates a vector image and a bitmap image, returning the image's image map.
+     * If there's a {@link Config#getRenderCacheDir() render cache} then identical diagrams
+     * are copied from it rather than rendered again.
      */
     public String generateDiagram(File dotFile, File bitmapFile, File vectorFile) throws DotFailure {
+        DiagramCache cache = getCache();
+        String cacheKey = null;
+        if (cache != null) {
+            try {
+                cacheKey = cache.getKey(dotFile, version + "|" + getExe() + "|" +
+                                        getVectorFormat() + getVectorRenderer() + "|" +
+                                        getBitmapFormat() + getRenderer());
+                String map = cache.get(cacheKey, bitmapFile, vectorFile);
+                if (map != null) {
+                    logger.fine("Using cached diagram of " + dotFile);
+                    return map;
+                }
+            } catch (IOException exc) {
+                throw new DotFailure("Failed to read " + dotFile + ": " + exc);
+            }
+        }
+
         StringBuilder mapBuffer = new StringBuilder(1024);
 
         BufferedReader mapReader = null;
@@ -319,7 +360,10 @@ public class Dot {
 
             // dot generates post-HTML 4.0.1 output...convert trailing />'s to >'s
             //System.out.println(mapBuffer);
-            return mapBuffer.toString().replace("/>", ">");
+            String map = mapBuffer.toString().replace("/>", ">");
+            if (cache != null)
+                cache.put(cacheKey, bitmapFile, vectorFile, map);
+            return map;
         } catch (InterruptedException interrupted) {
             throw new RuntimeException(interrupted);
         } catch (DotFailure failed) {
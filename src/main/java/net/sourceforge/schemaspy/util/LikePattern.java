@@ -0,0 +1,147 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Derives SQL <code>LIKE</code> patterns from regular expressions so that
+ * the database can do some of the filtering that we'd otherwise do after
+ * we've already pulled everything across the wire.<p/>
+ *
+ * The derived pattern is always at least as permissive as the regular expression
+ * (the worst case is <code>%</code>), so the regular expression remains
+ * the final authority on what matches.
+ */
+public class LikePattern {
+    private static final String REGEX_META_CHARS = ".[](){}*+?|^$";
+
+    private LikePattern() {
+    }
+
+    /**
+     * Returns a <code>LIKE</code> pattern that matches at least everything
+     * that <code>regex</code> {@link java.util.regex.Matcher#matches() matches}.
+     * That's the longest literal prefix that all of the matches must start with
+     * followed by <code>%</code>.
+     *
+     * @param regex
+     * @return
+     */
+    public static String fromRegex(Pattern regex) {
+        if (regex == null || regex.flags() != 0)
+            return "%";  // e.g. case insensitive, so a prefix could exclude valid matches
+
+        String prefix = null;
+        for (String branch : splitAlternatives(regex.pattern())) {
+            String branchPrefix = getLiteralPrefix(branch);
+            prefix = prefix == null ? branchPrefix : getCommonPrefix(prefix, branchPrefix);
+            if (prefix.length() == 0)
+                break;
+        }
+
+        return (prefix == null ? "" : prefix) + "%";
+    }
+
+    /**
+     * Split the regular expression on its top-level <code>|</code>s
+     */
+    private static List<String> splitAlternatives(String regex) {
+        List<String> branches = new ArrayList<String>();
+        int depth = 0;
+        boolean inClass = false;
+        int start = 0;
+
+        for (int i = 0; i < regex.length(); ++i) {
+            char ch = regex.charAt(i);
+            if (ch == '\\') {
+                ++i; // skip whatever's escaped
+            } else if (inClass) {
+                if (ch == ']')
+                    inClass = false;
+            } else if (ch == '[') {
+                inClass = true;
+            } else if (ch == '(') {
+                ++depth;
+            } else if (ch == ')') {
+                --depth;
+            } else if (ch == '|' && depth == 0) {
+                branches.add(regex.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        branches.add(regex.substring(start));
+        return branches;
+    }
+
+    /**
+     * Returns the literal characters that every match of <code>regex</code>
+     * (which must not have any top-level alternatives) has to start with.
+     */
+    private static String getLiteralPrefix(String regex) {
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+
+        while (i < regex.length()) {
+            char literal = regex.charAt(i);
+            int next = i + 1;
+
+            if (literal == '\\') {
+                if (next >= regex.length())
+                    break;
+                literal = regex.charAt(next++);
+                if (Character.isLetterOrDigit(literal))
+                    break;  // character class (\d), quote (\Q), back reference, etc.
+            } else if (REGEX_META_CHARS.indexOf(literal) != -1) {
+                break;
+            }
+
+            // these have special meanings in LIKE (or its escaping).
+            // note that '_' is fine since it matches the literal (along with anything else)
+            if (literal == '%' || literal == '\\')
+                break;
+
+            if (next < regex.length()) {
+                char quantifier = regex.charAt(next);
+                if (quantifier == '?' || quantifier == '*' || quantifier == '{')
+                    break;  // literal isn't necessarily there (or we're not sure)
+                if (quantifier == '+') {
+                    prefix.append(literal); // there's at least one, but we don't know how many
+                    break;
+                }
+            }
+
+            prefix.append(literal);
+            i = next;
+        }
+
+        return prefix.toString();
+    }
+
+    private static String getCommonPrefix(String first, String second) {
+        int len = Math.min(first.length(), second.length());
+        int i = 0;
+        while (i < len && first.charAt(i) == second.charAt(i))
+            ++i;
+        return first.substring(0, i);
+    }
+}
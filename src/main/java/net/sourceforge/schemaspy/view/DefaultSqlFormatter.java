@@ -230,24 +230,27 @@ public class DefaultSqlFormatter implements SqlFormatter {
                 "ZONE"
             }));
 
-            try {
-                String keywordsArray[] = new String[] {
-                    meta.getSQLKeywords(),
-                    meta.getSystemFunctions(),
-                    meta.getNumericFunctions(),
-                    meta.getStringFunctions(),
-                    meta.getTimeDateFunctions()
-                };
-                for (int i = 0; i < keywordsArray.length; ++i) {
-                    StringTokenizer tokenizer = new StringTokenizer(keywordsArray[i].toUpperCase(), ",");
+            // there's nothing more to be had without a connection (e.g. -fromXml)
+            if (meta != null) {
+                try {
+                    String keywordsArray[] = new String[] {
+                        meta.getSQLKeywords(),
+                        meta.getSystemFunctions(),
+                        meta.getNumericFunctions(),
+                        meta.getStringFunctions(),
+                        meta.getTimeDateFunctions()
+                    };
+                    for (int i = 0; i < keywordsArray.length; ++i) {
+                        StringTokenizer tokenizer = new StringTokenizer(keywordsArray[i].toUpperCase(), ",");
 
-                    while (tokenizer.hasMoreTokens()) {
-                        keywords.add(tokenizer.nextToken().trim());
+                        while (tokenizer.hasMoreTokens()) {
+                            keywords.add(tokenizer.nextToken().trim());
+                        }
                     }
+                } catch (Exception exc) {
+                    // don't totally fail just because we can't extract these details...
+                    System.err.println(exc);
                 }
-            } catch (Exception exc) {
-                // don't totally fail just because we can't extract these details...
-                System.err.println(exc);
             }
         }
 
@@ -19,6 +19,7 @@
 package net.sourceforge.schemaspy.view;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -96,16 +97,19 @@ public class DotNode {
         boolean skippedTrivial = false;
 
         if (config.showColumns) {
-            List<TableColumn> primaryColumns = table.getPrimaryColumns();
+            // don't materialize lightweight tables just to highlight their keys
+            List<TableColumn> primaryColumns = table.isLightweight() ? new ArrayList<TableColumn>() : table.getPrimaryColumns();
             Set<TableColumn> indexColumns = new HashSet<TableColumn>();
 
-            for (TableIndex index : table.getIndexes()) {
-                indexColumns.addAll(index.getColumns());
+            if (!table.isLightweight()) {
+                for (TableIndex index : table.getIndexes()) {
+                    indexColumns.addAll(index.getColumns());
+                }
+                indexColumns.removeAll(primaryColumns);
             }
-            indexColumns.removeAll(primaryColumns);
 
             for (TableColumn column : table.getColumns()) {
-                if (config.showTrivialColumns || config.showColumnDetails || column.isPrimary() || column.isForeignKey() || indexColumns.contains(column)) {
+                if (config.showTrivialColumns || config.showColumnDetails || primaryColumns.contains(column) || column.isForeignKey() || indexColumns.contains(column)) {
                     buf.append("      <TR>");
                     buf.append("<TD PORT=\"" + column.getName() + "\" " + colspan);
                     if (excludedColumns.contains(column))
@@ -151,6 +155,8 @@ public class DotNode {
         else {
             final long numRows = table.getNumRows();
             if (displayNumRows && numRows >= 0) {
+                if (table.isNumRowsApproximate())
+                    buf.append('~');
                 buf.append(NumberFormat.getInstance().format(numRows));
                 buf.append(" row");
                 if (numRows != 1)
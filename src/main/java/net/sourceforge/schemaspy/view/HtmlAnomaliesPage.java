@@ -19,7 +19,6 @@
 package net.sourceforge.schemaspy.view;
 
 import java.io.IOException;
-import java.text.NumberFormat;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -172,7 +171,7 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
                 if (displayNumRows) {
                     out.write("  <td class='detail' align='right'>");
                     if (table.getNumRows() >= 0)
-                        out.write(String.valueOf(NumberFormat.getIntegerInstance().format(table.getNumRows())));
+                        out.write(formatNumRows(table));
                     else
                         out.write("&nbsp;");
                     out.writeln("</td>");
@@ -21,6 +21,7 @@ package net.sourceforge.schemaspy.view;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.text.NumberFormat;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -348,6 +349,20 @@ public class HtmlFormatter {
         return false;
     }
 
+    /**
+     * Returns the table's (known) number of rows formatted for display,
+     * with counts that were estimated from database statistics marked as such
+     *
+     * @param table
+     * @return
+     */
+    protected String formatNumRows(Table table) {
+        String numRows = NumberFormat.getIntegerInstance().format(table.getNumRows());
+        if (table.isNumRowsApproximate())
+            return "<span title='Estimated from database statistics'>~" + numRows + "</span>";
+        return numRows;
+    }
+
     /**
      * Encode the specified string
      *
@@ -290,7 +290,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
                 html.write("  <td class='detail' align='right'>");
                 if (!table.isView()) {
                     if (table.getNumRows() >= 0)
-                        html.write(String.valueOf(integerFormatter.format(table.getNumRows())));
+                        html.write(formatNumRows(table));
                     else
                         html.write("<span title='Row count not available'>&nbsp;</span>");
                 } else
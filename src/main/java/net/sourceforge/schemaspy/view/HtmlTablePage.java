@@ -33,6 +33,7 @@ import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
+import net.sourceforge.schemaspy.model.TablePartition;
 import net.sourceforge.schemaspy.model.View;
 import net.sourceforge.schemaspy.util.CaseInsensitiveMap;
 import net.sourceforge.schemaspy.util.Dot;
@@ -87,6 +88,7 @@ public class HtmlTablePage extends HtmlFormatter {
         writeNumRows(db, table, out);
         out.writeln("</td></tr></table>");
         writeCheckConstraints(table, out);
+        writePartitions(table, out);
         writeIndexes(table, out);
         writeView(table, db, out);
         writeDiagram(table, stats, diagramsDir, out);
@@ -300,7 +302,10 @@ public class HtmlTablePage extends HtmlFormatter {
     private void writeNumRows(Database db, Table table, LineWriter out) throws IOException {
         out.write("<p title='" + table.getColumns().size() + " columns'>");
         if (displayNumRows && table.getNumRows() >= 0) {
-            out.write("Table contained " + NumberFormat.getIntegerInstance().format(table.getNumRows()) + " rows at ");
+            if (table.isNumRowsApproximate())
+                out.write("Table contained approximately " + NumberFormat.getIntegerInstance().format(table.getNumRows()) + " rows (estimated from database statistics) at ");
+            else
+                out.write("Table contained " + NumberFormat.getIntegerInstance().format(table.getNumRows()) + " rows at ");
         } else {
             out.write("Analyzed at ");
         }
@@ -336,6 +341,34 @@ public class HtmlTablePage extends HtmlFormatter {
         }
     }
 
+    private void writePartitions(Table table, LineWriter out) throws IOException {
+        Set<TablePartition> partitions = table.getPartitions();
+        if (!partitions.isEmpty()) {
+            out.writeln("<div class='indent'>");
+            out.writeln("<b>Partitions (" + NumberFormat.getIntegerInstance().format(partitions.size()) + "):</b>");
+            out.writeln("<table class='dataTable' border='1' rules='groups'><colgroup><colgroup>");
+            out.writeln("<thead>");
+            out.writeln(" <tr>");
+            out.writeln("  <th>Partition</th>");
+            out.writeln("  <th style='text-align:left;'>Bounds</th>");
+            out.writeln(" </tr>");
+            out.writeln("</thead>");
+            out.writeln("<tbody>");
+            for (TablePartition partition : partitions) {
+                out.writeln(" <tr>");
+                out.write("  <td class='detail'>");
+                out.write(partition.getName());
+                out.writeln("</td>");
+                out.write("  <td class='detail'>");
+                out.write(partition.getBound() == null ? "" : HtmlEncoder.encodeString(partition.getBound()));
+                out.writeln("</td>");
+                out.writeln(" </tr>");
+            }
+            out.writeln("</tbody>");
+            out.writeln("</table></div><p>");
+        }
+    }
+
     private void writeIndexes(Table table, LineWriter out) throws IOException {
         boolean showId = table.getId() != null;
         Set<TableIndex> indexes = table.getIndexes();
@@ -0,0 +1,291 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.view;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.Revision;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.TableColumn;
+import net.sourceforge.schemaspy.model.TableIndex;
+import net.sourceforge.schemaspy.model.TablePartition;
+import net.sourceforge.schemaspy.util.Dot;
+
+/**
+ * Keeps track of what each table's page (and its diagrams) was generated from
+ * so that <code>-incremental</code> runs only regenerate the ones that would change.<p/>
+ *
+ * What a table's page is generated from is summarized as a hash of:
+ * <ul>
+ * <li>the table's own metadata
+ * <li>the metadata of every table within two degrees of separation of it
+ *      (they're all in its diagrams, see {@link DotFormatter})
+ * <li>the options and environment that affect every page (e.g. the Graphviz version)
+ * </ul>
+ * The hashes are kept in a manifest in the output directory between runs.<p/>
+ *
+ * Note that a page that isn't regenerated keeps the time that it was last analyzed.
+ */
+public class OutputManifest {
+    /**
+     * Name of the manifest file in the output directory
+     */
+    public static final String FILE_NAME = "tables.manifest";
+
+    private final File file;
+    private final File tablesDir;
+    private final Properties previous = new Properties();
+    private final Properties current = new Properties();
+    private final String settings;
+    private final Set<String> tableNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<Table, String> digests = new HashMap<Table, String>();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param outputDir directory that contains the manifest (if any) and the tables' pages
+     * @param db
+     * @param tables the tables and views whose pages will be written
+     * @throws IOException
+     */
+    public OutputManifest(File outputDir, Database db, Collection<Table> tables) throws IOException {
+        file = new File(outputDir, FILE_NAME);
+        tablesDir = new File(outputDir, "tables");
+
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                previous.load(in);
+            } catch (IOException exc) {
+                // start over
+                logger.warning("Failed to read " + file + ": " + exc);
+                previous.clear();
+            } finally {
+                in.close();
+            }
+        }
+
+        for (Table table : tables)
+            tableNames.add(table.getName());
+
+        Config config = Config.getInstance();
+        Dot dot = Dot.getInstance();
+        StringBuilder buf = new StringBuilder();
+        buf.append(new Revision()).append('|');
+        buf.append(config.getCharset()).append('|').append(config.getCss()).append('|');
+        buf.append(config.getFont()).append('|').append(config.getFontSize()).append('|');
+        buf.append(config.getColumnDetails()).append('|').append(config.getSqlFormatter().getClass().getName()).append('|');
+        buf.append(config.getColumnExclusions()).append('|').append(config.getIndirectColumnExclusions()).append('|');
+        buf.append(config.isImpliedConstraintsEnabled()).append('|').append(config.isRailsEnabled()).append('|');
+        buf.append(config.isNumRowsEnabled()).append('|').append(config.isEncodeCommentsEnabled()).append('|');
+        buf.append(config.isLogoEnabled()).append('|').append(config.isMeterEnabled()).append('|');
+        buf.append(config.isRankDirBugEnabled()).append('|').append(config.isOneOfMultipleSchemas()).append('|');
+        buf.append(db.getName()).append('|').append(db.getSchema()).append('|').append(db.getCatalog()).append('|');
+        buf.append(db.getDescription()).append('|');
+        buf.append(config.hasOrphans()).append('|').append(config.hasRoutines()).append('|');
+        buf.append(dot.isValid()).append('|').append(dot.getVersion()).append('|');
+        buf.append(dot.getBitmapFormat()).append('|').append(dot.getRenderer()).append('|').append(dot.isHighQuality());
+        settings = hash(buf.toString());
+    }
+
+    /**
+     * Returns <code>true</code> if the table's page was generated by the previous run
+     * from the same things that it would be generated from now.<p/>
+     *
+     * Either way the table is recorded as being up to date by the time that the manifest
+     * is {@link #write() written}, so this should only be called right before its page
+     * would be written.
+     *
+     * @param table
+     * @return
+     */
+    public boolean isUnchanged(Table table) {
+        String hash = getHash(table);
+        current.setProperty(table.getName(), hash);
+
+        return hash.equals(previous.getProperty(table.getName())) &&
+                new File(tablesDir, table.getName() + ".html").isFile();
+    }
+
+    /**
+     * Write the manifest so it can be used by the next run
+     *
+     * @throws IOException
+     */
+    public void write() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            current.store(out, "Hashes of what each table's page was generated from");
+        } finally {
+            out.close();
+        }
+
+        file.delete();
+        if (!tmp.renameTo(file))
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+    }
+
+    private String getHash(Table table) {
+        // the order that the relatives are visited in doesn't matter
+        Set<String> relatives = new TreeSet<String>();
+        for (Table relative : getRelatives(table))
+            relatives.add(relative.getFullName() + '=' + getDigest(relative));
+
+        StringBuilder buf = new StringBuilder();
+        buf.append(settings).append('|');
+        buf.append(getDigest(table)).append('|');
+        buf.append(relatives);
+
+        // views list the tables that they reference, so they can change
+        // when a table with a matching name comes or goes
+        if (table.isView())
+            buf.append('|').append(tableNames);
+
+        return hash(buf.toString());
+    }
+
+    /**
+     * Returns the tables within two degrees of separation of <code>table</code>
+     * (not including itself)
+     */
+    private Set<Table> getRelatives(Table table) {
+        Set<Table> immediate = getImmediateRelatives(table);
+        Set<Table> relatives = new HashSet<Table>(immediate);
+        for (Table relative : immediate)
+            relatives.addAll(getImmediateRelatives(relative));
+
+        relatives.remove(table);
+        return relatives;
+    }
+
+    private Set<Table> getImmediateRelatives(Table table) {
+        Set<Table> relatives = new HashSet<Table>();
+        for (TableColumn column : table.getColumns()) {
+            for (TableColumn parent : column.getParents())
+                relatives.add(parent.getTable());
+            for (TableColumn child : column.getChildren())
+                relatives.add(child.getTable());
+        }
+
+        return relatives;
+    }
+
+    /**
+     * Returns a digest of the table's own metadata, including the names of
+     * its relationships (but not the details of what it's related to)
+     */
+    private String getDigest(Table table) {
+        String digest = digests.get(table);
+        if (digest == null) {
+            StringBuilder buf = new StringBuilder();
+            buf.append(table.getFullName()).append('|');
+            buf.append(table.isView()).append('|').append(table.isRemote()).append('|').append(table.isLightweight()).append('|');
+            buf.append(table.getId()).append('|');
+            buf.append(table.getComments()).append('|');
+            buf.append(table.getNumRows()).append('|').append(table.isNumRowsApproximate()).append('|');
+
+            for (TableColumn column : table.getColumns()) {
+                buf.append("\ncolumn|").append(column.getName()).append('|').append(column.getId()).append('|');
+                buf.append(column.getType()).append('|').append(column.getDetailedSize()).append('|');
+                buf.append(column.isNullable()).append('|').append(column.isAutoUpdated()).append('|');
+                buf.append(column.isExcluded()).append('|').append(column.isAllExcluded()).append('|');
+                buf.append(column.getDefaultValue()).append('|').append(column.getComments());
+
+                // parents aren't kept in any particular order, so sort them all
+                Set<String> relationships = new TreeSet<String>();
+                for (TableColumn parent : column.getParents())
+                    relationships.add(getRelationship("parent", parent, column.getParentConstraint(parent)));
+                for (TableColumn child : column.getChildren())
+                    relationships.add(getRelationship("child", child, column.getChildConstraint(child)));
+                for (String relationship : relationships)
+                    buf.append('\n').append(relationship);
+            }
+
+            // asking a lightweight table for these would load them,
+            // and they're not shown for lightweight tables anyway
+            if (!table.isLightweight()) {
+                for (TableColumn column : table.getPrimaryColumns())
+                    buf.append("\nprimaryKey|").append(column.getName());
+
+                for (TableIndex index : new TreeSet<TableIndex>(table.getIndexes())) {
+                    buf.append("\nindex|").append(index.getName()).append('|').append(index.getId()).append('|');
+                    buf.append(index.isUnique()).append('|').append(index.isPrimaryKey());
+                    for (TableColumn column : index.getColumns())
+                        buf.append('|').append(column.getName()).append(index.isAscending(column) ? " asc" : " desc");
+                }
+            }
+
+            for (Map.Entry<String, String> check : table.getCheckConstraints().entrySet())
+                buf.append("\ncheck|").append(check.getKey()).append('|').append(check.getValue());
+
+            for (TablePartition partition : table.getPartitions())
+                buf.append("\npartition|").append(partition.getName()).append('|').append(partition.getBound());
+
+            if (table.isView())
+                buf.append("\nview|").append(table.getViewSql());
+
+            digest = hash(buf.toString());
+            digests.put(table, digest);
+        }
+
+        return digest;
+    }
+
+    private static String getRelationship(String type, TableColumn other, ForeignKeyConstraint constraint) {
+        StringBuilder buf = new StringBuilder(type).append('|');
+        buf.append(other.getTable().getFullName()).append('|').append(other.getName()).append('|');
+        if (constraint != null) {
+            buf.append(constraint.getName()).append('|').append(constraint.isImplied()).append('|');
+            buf.append(constraint.getDeleteRule()).append('|').append(constraint.getUpdateRule());
+        }
+        return buf.toString();
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException(exc);    // MD5 is required by the JRE
+        } catch (UnsupportedEncodingException exc) {
+            throw new RuntimeException(exc);    // as is UTF-8
+        }
+    }
+}
@@ -97,8 +97,11 @@ public class XmlTableFormatter {
         DOMUtil.appendAttribute(tableNode, "catalog", table.getCatalog());
         DOMUtil.appendAttribute(tableNode, "schema", table.getSchema());
         DOMUtil.appendAttribute(tableNode, "name", table.getName());
-        if (table.getNumRows() >= 0)
+        if (table.getNumRows() >= 0) {
             DOMUtil.appendAttribute(tableNode, "numRows", String.valueOf(table.getNumRows()));
+            if (table.isNumRowsApproximate())
+                DOMUtil.appendAttribute(tableNode, "numRowsApproximate", "true");
+        }
         DOMUtil.appendAttribute(tableNode, "type", table.isView() ? "VIEW" : "TABLE");
         DOMUtil.appendAttribute(tableNode, "remarks", table.getComments() == null ? "" : table.getComments());
         appendColumns(tableNode, table);
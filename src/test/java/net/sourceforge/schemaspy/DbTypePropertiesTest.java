@@ -0,0 +1,47 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.util.Properties;
+import junit.framework.TestCase;
+
+/**
+ * @author John Currier
+ */
+public class DbTypePropertiesTest extends TestCase {
+    /**
+     * Things like <code>alter table ... alter column ... set default</code> or
+     * <code>set not null</code> don't touch the table's <code>pg_class</code> row,
+     * so a marker based on that alone would leave the table stale in a <code>-useCache</code> snapshot
+     */
+    public void testPgsqlChangeMarkersCoverColumnChanges() throws Exception {
+        for (String type : new String[] {"pgsql", "pgsql10"}) {
+            Properties properties = new Config().determineDbProperties(type);
+            assertCovered(type, properties.getProperty("selectTableChangeMarkersSql"));
+            assertCovered(type, properties.getProperty("selectSchemaVersionSql"));
+        }
+    }
+
+    private static void assertCovered(String type, String sql) {
+        assertNotNull(type, sql);
+        String[] catalogs = {"attnotnull", "atttypid", "pg_attrdef", "pg_description", "pg_constraint", "pg_rewrite", "pg_inherits"};
+        for (String catalog : catalogs)
+            assertTrue(type + " doesn't consider " + catalog, sql.indexOf(catalog) != -1);
+    }
+}
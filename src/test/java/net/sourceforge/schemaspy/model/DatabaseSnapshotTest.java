@@ -0,0 +1,152 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.File;
+import java.sql.DatabaseMetaData;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.Config;
+
+/**
+ * @author John Currier
+ */
+public class DatabaseSnapshotTest extends TestCase {
+    private static final String KEY = "jdbc:test|test|null|PUBLIC";
+
+    private File file;
+    private Config config;
+
+    @Override
+    protected void setUp() throws Exception {
+        config = new Config();
+        config.setSchema("PUBLIC");
+        Config.setInstance(config);
+
+        file = File.createTempFile("schemaspy", ".snapshot");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testRoundTrip() throws Exception {
+        new DatabaseSnapshot(SampleDatabase.create(config), file, KEY, "v1").write();
+
+        Database db = newDatabase();
+        assertTrue(new DatabaseSnapshot(db, file, KEY, "v1").read());
+
+        assertEquals(3, db.getTables().size());
+        assertEquals(1, db.getViews().size());
+        assertEquals(2, db.getRemoteTables().size());
+
+        Table parent = db.getTablesByName().get("PARENT");
+        assertEquals("the parents", parent.getComments());
+        assertEquals(new Integer(7), parent.getId());
+        assertFalse("row counts aren't schema", parent.isNumRowsResolved());
+        TableColumn id = parent.getColumn("ID");
+        assertEquals("INT", id.getType());
+        assertEquals(10, id.getLength());
+        assertFalse(id.isNullable());
+        assertTrue(id.isAutoUpdated());
+        TableColumn name = parent.getColumn("NAME");
+        assertTrue(name.isNullable());
+        assertEquals("x", name.getDefaultValue());
+        assertEquals("the name", name.getComments());
+        assertEquals(1, parent.getPrimaryColumns().size());
+        assertSame(id, parent.getPrimaryColumns().get(0));
+        TableIndex index = parent.getIndex("PK_PARENT");
+        assertTrue(index.isUnique());
+        assertTrue(index.isPrimaryKey());
+        assertEquals("(ID > 0)", parent.getCheckConstraints().get("CK_ID"));
+
+        Table child = db.getTablesByName().get("CHILD");
+        TableColumn parentId = child.getColumn("PARENT_ID");
+        assertEquals(1, parentId.getParents().size());
+        assertTrue(parentId.getParents().contains(id));
+        ForeignKeyConstraint foreignKey = parentId.getParentConstraint(id);
+        assertEquals("FK_PARENT", foreignKey.getName());
+        assertEquals(DatabaseMetaData.importedKeyCascade, foreignKey.getDeleteRule());
+        assertTrue(id.getChildren().contains(parentId));
+        assertFalse(child.isNumRowsResolved());
+
+        Table remote = db.getRemoteTable(null, "OTHER", "REMOTE");
+        assertNotNull(remote);
+        assertTrue(remote.isRemote());
+        assertTrue(child.getColumn("CURRENCY").getParents().contains(remote.getColumn("CODE")));
+
+        View view = db.getViews().iterator().next();
+        assertEquals("V_PARENT", view.getName());
+        assertEquals("select ID from PARENT", view.getViewSql());
+
+        assertEquals(1, db.getRoutines().size());
+        Routine routine = db.getRoutines().iterator().next();
+        assertEquals("COUNT_PARENTS", routine.getName());
+        assertEquals(1, routine.getParameters().size());
+    }
+
+    public void testChangedSchemaIsNotRead() throws Exception {
+        new DatabaseSnapshot(SampleDatabase.create(config), file, KEY, "v1").write();
+
+        Database db = newDatabase();
+        assertFalse(new DatabaseSnapshot(db, file, KEY, "v2").read());
+        assertTrue(db.getTables().isEmpty());
+    }
+
+    public void testUnknownSchemaVersionIsNotRead() throws Exception {
+        new DatabaseSnapshot(SampleDatabase.create(config), file, KEY, null).write();
+
+        Database db = newDatabase();
+        assertFalse("can't tell if it's stale", new DatabaseSnapshot(db, file, KEY, null).read());
+        assertTrue(db.getTables().isEmpty());
+    }
+
+    public void testDifferentKeyIsNotRead() throws Exception {
+        new DatabaseSnapshot(SampleDatabase.create(config), file, KEY, "v1").write();
+
+        Database db = newDatabase();
+        assertFalse(new DatabaseSnapshot(db, file, KEY + "|other", "v1").read());
+        assertTrue(db.getTables().isEmpty());
+    }
+
+    public void testReadUnchanged() throws Exception {
+        Map<String, String> markers = new HashMap<String, String>();
+        markers.put("PARENT", "1");
+        markers.put("CHILD", "1");
+        DatabaseSnapshot snapshot = new DatabaseSnapshot(SampleDatabase.create(config), file, KEY, "v1");
+        snapshot.setChangeMarkers(markers);
+        snapshot.write();
+
+        markers.put("CHILD", "2");
+        Database db = newDatabase();
+        Set<String> unchanged = new DatabaseSnapshot(db, file, KEY, "v2").readUnchanged(markers);
+        assertEquals(1, unchanged.size());
+        assertTrue(unchanged.contains("PARENT"));
+        assertNotNull(db.getTablesByName().get("PARENT"));
+        assertNull(db.getTablesByName().get("CHILD"));
+    }
+
+    private Database newDatabase() {
+        return new Database(config, "test", null, "PUBLIC", "Test");
+    }
+}
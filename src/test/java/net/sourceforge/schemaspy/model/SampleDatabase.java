@@ -0,0 +1,108 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.DatabaseMetaData;
+import net.sourceforge.schemaspy.Config;
+
+/**
+ * A small <code>PUBLIC</code> schema that the model's tests share:
+ * <ul>
+ * <li>PARENT - an id, row count estimate, auto-increment primary key (PK_PARENT),
+ *      a nullable NAME with a default and comments, a unique index (UK_NAME) and a check constraint (CK_ID)
+ * <li>CHILD - 3 rows, with PARENT_ID referencing PARENT (FK_PARENT, cascading deletes)
+ *      and CURRENCY referencing OTHER.REMOTE (FK_CURRENCY)
+ * <li>UNCOUNTED - a table whose rows couldn't be counted
+ * <li>OTHER.REMOTE - a parent in another schema
+ * <li>OTHER.AUDIT - a child in another schema that references PARENT (FK_AUDIT)
+ * <li>V_PARENT - a view of PARENT
+ * <li>COUNT_PARENTS - a function with a single parameter
+ * </ul>
+ *
+ * @author John Currier
+ */
+class SampleDatabase {
+    private SampleDatabase() {
+    }
+
+    /**
+     * @param config must have its schema set to <code>PUBLIC</code>
+     * @return a new connection-less database populated with the schema described above
+     */
+    static Database create(Config config) throws Exception {
+        Database db = new Database(config, "test", null, "PUBLIC", "Test");
+
+        Table parent = new Table(db, null, "PUBLIC", "PARENT", "the parents", false);
+        parent.setId(new Integer(7));
+        parent.setNumRows(10, true);
+        TableColumn id = new TableColumn(parent, "ID", new Integer(0), "INT", 10, 0, false, true, null, null);
+        parent.addColumn(id);
+        TableColumn name = new TableColumn(parent, "NAME", new Integer(1), "VARCHAR", 40, 0, true, false, "x", "the name");
+        parent.addColumn(name);
+        parent.setPrimaryColumn(id);
+        TableIndex index = new TableIndex("PK_PARENT", true);
+        index.addColumn(id, "A");
+        index.setIsPrimaryKey(true);
+        parent.addIndex(index);
+        index = new TableIndex("UK_NAME", true);
+        index.addColumn(name, "A");
+        parent.addIndex(index);
+        parent.addCheckConstraint("CK_ID", "(ID > 0)");
+        db.addTable(parent);
+
+        RemoteTable remote = new RemoteTable(db, null, "OTHER", "REMOTE", "PUBLIC", true);
+        TableColumn code = new TableColumn(remote, "CODE", new Integer(0), "CHAR", 3, 0, false, false, null, null);
+        remote.addColumn(code);
+        remote.setDetailsLoaded();
+        db.addRemoteTable(remote);
+
+        Table child = new Table(db, null, "PUBLIC", "CHILD", null, false);
+        child.setNumRows(3, false);
+        TableColumn parentId = new TableColumn(child, "PARENT_ID", new Integer(0), "INT", 10, 0, false, false, null, null);
+        child.addColumn(parentId);
+        TableColumn currency = new TableColumn(child, "CURRENCY", new Integer(1), "CHAR", 3, 0, false, false, null, null);
+        child.addColumn(currency);
+        child.addForeignKey("FK_PARENT", parentId, id, DatabaseMetaData.importedKeyNoAction, DatabaseMetaData.importedKeyCascade);
+        child.addForeignKey("FK_CURRENCY", currency, code, DatabaseMetaData.importedKeyNoAction, DatabaseMetaData.importedKeyNoAction);
+        db.addTable(child);
+
+        RemoteTable audit = new RemoteTable(db, null, "OTHER", "AUDIT", "PUBLIC", true);
+        TableColumn audited = new TableColumn(audit, "PARENT_ID", new Integer(0), "INT", 10, 0, false, false, null, null);
+        audit.addColumn(audited);
+        audit.setDetailsLoaded();
+        audit.addForeignKey("FK_AUDIT", audited, id, DatabaseMetaData.importedKeyNoAction, DatabaseMetaData.importedKeyNoAction);
+        db.addRemoteTable(audit);
+
+        Table uncounted = new Table(db, null, "PUBLIC", "UNCOUNTED", null, false);
+        uncounted.setNumRows(-1);
+        uncounted.addColumn(new TableColumn(uncounted, "ID", new Integer(0), "INT", 10, 0, false, false, null, null));
+        db.addTable(uncounted);
+
+        View view = new View(db, null, "PUBLIC", "V_PARENT", null, "select ID from PARENT", false);
+        view.addColumn(new TableColumn(view, "ID", new Integer(0), "INT", 10, 0, false, false, null, null));
+        db.addView(view);
+
+        Routine routine = new Routine("COUNT_PARENTS", "FUNCTION", "INT", "SQL", "select count(*) from PARENT",
+                                        true, "READS SQL DATA", "DEFINER", null);
+        routine.addParameter(new RoutineParameter("MINIMUM", "INT", "IN"));
+        db.addRoutine(routine);
+
+        return db;
+    }
+}
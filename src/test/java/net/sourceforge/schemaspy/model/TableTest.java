@@ -0,0 +1,62 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.DatabaseMetaData;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.Config;
+
+/**
+ * @author John Currier
+ */
+public class TableTest extends TestCase {
+    private Database db;
+    private TableColumn id;
+    private Table child;
+
+    @Override
+    protected void setUp() throws Exception {
+        Config config = new Config();
+        config.setSchema("PUBLIC");
+        Config.setInstance(config);
+
+        db = new Database(config, "test", null, "PUBLIC", "Test");
+
+        Table orders = new Table(db, null, "PUBLIC", "ORDERS", null, false);
+        id = new TableColumn(orders, "ID", new Integer(0), "INT", 10, 0, false, false, null, null);
+        orders.addColumn(id);
+        db.addTable(orders);
+        db.setPartitionParent("ORDERS_2010", "ORDERS");
+
+        child = new Table(db, null, "PUBLIC", "ORDER_LINES", null, false);
+        child.addColumn(new TableColumn(child, "ORDER_ID", new Integer(0), "INT", 10, 0, false, false, null, null));
+        db.addTable(child);
+    }
+
+    public void testForeignKeyToPartitionReferencesItsTable() throws Exception {
+        child.addForeignKey("FK_ORDER", "ORDER_ID", null, "PUBLIC", "ORDERS_2010", "ID",
+                            DatabaseMetaData.importedKeyNoAction, DatabaseMetaData.importedKeyNoAction,
+                            db.getTablesByName());
+
+        assertTrue("partitions aren't remote tables", db.getRemoteTables().isEmpty());
+        TableColumn orderId = child.getColumn("ORDER_ID");
+        assertTrue(orderId.getParents().contains(id));
+        assertTrue(id.getChildren().contains(orderId));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.util.DOMUtil;
+import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.view.XmlTableFormatter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * @author John Currier
+ */
+public class XmlDatabaseReaderTest extends TestCase {
+    private File xmlFile;
+    private Config config;
+
+    @Override
+    protected void setUp() throws Exception {
+        config = new Config();
+        config.setSchema("PUBLIC");
+        Config.setInstance(config);
+
+        xmlFile = File.createTempFile("test.PUBLIC", ".xml");
+        write(SampleDatabase.create(config), xmlFile);
+    }
+
+    @Override
+    protected void tearDown() {
+        xmlFile.delete();
+    }
+
+    public void testForeignKeys() throws Exception {
+        Database db = new XmlDatabaseReader(config).read(xmlFile);
+
+        TableColumn id = db.getTablesByName().get("PARENT").getColumn("ID");
+        TableColumn parentId = db.getTablesByName().get("CHILD").getColumn("PARENT_ID");
+        assertTrue(parentId.getParents().contains(id));
+        assertTrue(id.getChildren().contains(parentId));
+
+        ForeignKeyConstraint foreignKey = parentId.getParentConstraint(id);
+        assertEquals("FK_PARENT", foreignKey.getName());
+        assertFalse(foreignKey.isImplied());
+        assertTrue(foreignKey.isCascadeOnDelete());
+
+        // both sides describe it, but it's only added once
+        assertEquals(1, foreignKey.getChildColumns().size());
+        assertEquals(2, id.getChildren().size());   // CHILD and OTHER.AUDIT
+    }
+
+    public void testRemoteTables() throws Exception {
+        Database db = new XmlDatabaseReader(config).read(xmlFile);
+        assertEquals(2, db.getRemoteTables().size());
+
+        // a parent in another schema
+        Table remote = db.getRemoteTable(null, "OTHER", "REMOTE");
+        assertNotNull(remote);
+        assertTrue(remote.isRemote());
+        TableColumn code = remote.getColumn("CODE");
+        assertNotNull(code);
+        assertTrue(db.getTablesByName().get("CHILD").getColumn("CURRENCY").getParents().contains(code));
+
+        // a child in another schema, which is only described by its parent
+        Table audit = db.getRemoteTable(null, "OTHER", "AUDIT");
+        assertNotNull(audit);
+        TableColumn audited = audit.getColumn("PARENT_ID");
+        assertNotNull(audited);
+        TableColumn id = db.getTablesByName().get("PARENT").getColumn("ID");
+        assertTrue(audited.getParents().contains(id));
+        assertEquals("FK_AUDIT", audited.getParentConstraint(id).getName());
+    }
+
+    public void testPrimaryKeyIndex() throws Exception {
+        Database db = new XmlDatabaseReader(config).read(xmlFile);
+
+        Table parent = db.getTablesByName().get("PARENT");
+        assertEquals(1, parent.getPrimaryColumns().size());
+        assertSame(parent.getColumn("ID"), parent.getPrimaryColumns().get(0));
+        assertTrue(parent.getIndex("PK_PARENT").isPrimaryKey());
+        assertTrue(parent.getIndex("UK_NAME").isUnique());
+        assertFalse(parent.getIndex("UK_NAME").isPrimaryKey());
+    }
+
+    public void testNumRows() throws Exception {
+        Database db = new XmlDatabaseReader(config).read(xmlFile);
+
+        Table parent = db.getTablesByName().get("PARENT");
+        assertEquals(10, parent.getNumRows());
+        assertTrue(parent.isNumRowsApproximate());
+
+        Table child = db.getTablesByName().get("CHILD");
+        assertEquals(3, child.getNumRows());
+        assertFalse(child.isNumRowsApproximate());
+
+        assertEquals(-1, db.getTablesByName().get("UNCOUNTED").getNumRows());
+    }
+
+    /**
+     * Write the database's XML just like {@link net.sourceforge.schemaspy.SchemaAnalyzer} does
+     */
+    private static void write(Database db, File file) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element rootNode = document.createElement("database");
+        document.appendChild(rootNode);
+        DOMUtil.appendAttribute(rootNode, "name", db.getName());
+        DOMUtil.appendAttribute(rootNode, "schema", db.getSchema());
+        DOMUtil.appendAttribute(rootNode, "type", db.getDatabaseProduct());
+
+        Collection<Table> tables = new ArrayList<Table>(db.getTables());
+        tables.addAll(db.getViews());
+        XmlTableFormatter.getInstance().appendTables(rootNode, tables);
+
+        LineWriter out = new LineWriter(file, Config.DOT_CHARSET);
+        document.getDocumentElement().normalize();
+        DOMUtil.printDOM(document, out);
+        out.close();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ * Tests the derivation of SQL LIKE patterns from table inclusion regular expressions.
+ */
+public class LikePatternTest extends TestCase {
+    public void testMatchEverything() {
+        assertEquals("%", like(".*"));
+        assertEquals("%", like(""));
+    }
+
+    public void testLiteralPrefix() {
+        assertEquals("ORDER%", like("ORDER.*"));
+        assertEquals("ORDER_LINE%", like("^ORDER_LINE$"));
+        assertEquals("ORDER.%", like("ORDER\\..*"));
+    }
+
+    public void testQuantifiers() {
+        assertEquals("ORDER%", like("ORDERS?"));
+        assertEquals("ORDER%", like("ORDERS*"));
+        assertEquals("ORDERS%", like("ORDERS+_HIST"));
+        assertEquals("ORDER%", like("ORDERS{2}"));
+    }
+
+    public void testAlternatives() {
+        assertEquals("ORDER_%", like("ORDER_LINE|ORDER_HEADER"));
+        assertEquals("%", like("ORDERS|CUSTOMERS"));
+        assertEquals("ORDER%", like("ORDER(S|_LINE)"));
+    }
+
+    public void testNoUsablePrefix() {
+        assertEquals("%", like("[A-Z]+_HIST"));
+        assertEquals("%", like("\\wORDER"));
+    }
+
+    public void testLikeWildcards() {
+        assertEquals("100%", like("100%.*"));
+        assertEquals("ORDER_LINE%", like("ORDER_LINE"));
+    }
+
+    public void testCaseInsensitive() {
+        assertEquals("%", LikePattern.fromRegex(Pattern.compile("ORDER.*", Pattern.CASE_INSENSITIVE)));
+    }
+
+    private static String like(String regex) {
+        return LikePattern.fromRegex(Pattern.compile(regex));
+    }
+}
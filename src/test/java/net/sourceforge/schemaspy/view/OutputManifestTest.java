@@ -0,0 +1,130 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.view;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.XmlDatabaseReader;
+
+/**
+ * @author John Currier
+ */
+public class OutputManifestTest extends TestCase {
+    // CHILD.PARENT_ID has several parents so the order that they're visited in varies
+    private static final String XML =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<database name=\"test\" schema=\"PUBLIC\" type=\"Test\">\n" +
+        "<tables>\n" +
+        "<table name=\"CHILD\" numRows=\"3\" schema=\"PUBLIC\" type=\"TABLE\">\n" +
+        "<column digits=\"0\" id=\"0\" name=\"PARENT_ID\" nullable=\"false\" size=\"10\" type=\"INT\">\n" +
+        "<parent column=\"ID\" foreignKey=\"FK_PARENT\" schema=\"PUBLIC\" table=\"PARENT\"/>\n" +
+        "<parent column=\"ID\" foreignKey=\"FK_REMOTE\" schema=\"OTHER\" table=\"REMOTE\"/>\n" +
+        "<parent column=\"ID\" foreignKey=\"FK_REMOTE2\" schema=\"OTHER\" table=\"REMOTE2\"/>\n" +
+        "<parent column=\"ID\" foreignKey=\"FK_REMOTE3\" schema=\"OTHER\" table=\"REMOTE3\"/>\n" +
+        "<parent column=\"ID\" foreignKey=\"FK_REMOTE4\" schema=\"OTHER\" table=\"REMOTE4\"/>\n" +
+        "</column>\n" +
+        "</table>\n" +
+        "<table name=\"PARENT\" numRows=\"1\" schema=\"PUBLIC\" type=\"TABLE\">\n" +
+        "<column digits=\"0\" id=\"0\" name=\"ID\" nullable=\"false\" size=\"10\" type=\"INT\">\n" +
+        "<child column=\"PARENT_ID\" foreignKey=\"FK_PARENT\" schema=\"PUBLIC\" table=\"CHILD\"/>\n" +
+        "</column>\n" +
+        "<primaryKey column=\"ID\" sequenceNumberInPK=\"1\"/>\n" +
+        "</table>\n" +
+        "<table name=\"UNRELATED\" numRows=\"0\" schema=\"PUBLIC\" type=\"TABLE\">\n" +
+        "<column digits=\"0\" id=\"0\" name=\"ID\" nullable=\"false\" size=\"10\" type=\"INT\"/>\n" +
+        "</table>\n" +
+        "</tables>\n" +
+        "</database>\n";
+
+    private File outputDir;
+    private File xmlFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        outputDir = File.createTempFile("manifest", "");
+        outputDir.delete();
+        new File(outputDir, "tables").mkdirs();
+
+        xmlFile = new File(outputDir, "test.PUBLIC.xml");
+        OutputStream out = new FileOutputStream(xmlFile);
+        try {
+            out.write(XML.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(outputDir);
+    }
+
+    /**
+     * Reading the same model again must produce the same digests,
+     * otherwise tables would be seen as changed when they aren't
+     */
+    public void testSameModelIsUnchanged() throws Exception {
+        for (int i = 0; i < 5; ++i) {
+            Database db = read();
+            OutputManifest manifest = new OutputManifest(outputDir, db, db.getTables());
+            for (Table table : db.getTables()) {
+                boolean unchanged = manifest.isUnchanged(table);
+                if (i > 0)
+                    assertTrue(table.getName() + " was seen as changed", unchanged);
+                new File(outputDir, "tables/" + table.getName() + ".html").createNewFile();
+            }
+            manifest.write();
+        }
+    }
+
+    public void testChangedModelIsChanged() throws Exception {
+        Database db = read();
+        OutputManifest manifest = new OutputManifest(outputDir, db, db.getTables());
+        for (Table table : db.getTables()) {
+            manifest.isUnchanged(table);
+            new File(outputDir, "tables/" + table.getName() + ".html").createNewFile();
+        }
+        manifest.write();
+
+        db = read();
+        db.getTablesByName().get("PARENT").setNumRows(2, false);
+        manifest = new OutputManifest(outputDir, db, db.getTables());
+        assertFalse(manifest.isUnchanged(db.getTablesByName().get("PARENT")));
+        assertFalse("relatives of changed tables are changed", manifest.isUnchanged(db.getTablesByName().get("CHILD")));
+        assertTrue(manifest.isUnchanged(db.getTablesByName().get("UNRELATED")));
+    }
+
+    private Database read() throws Exception {
+        return new XmlDatabaseReader(new Config()).read(xmlFile);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}